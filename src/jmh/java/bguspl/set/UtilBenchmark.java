@@ -0,0 +1,112 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks for the Util hot paths: testSet (called for every claim and every searched combination), findSets over
+ * a table-sized and a deck-sized collection of cards, and cardsToFeatures.
+ * Run with -prof gc (see pom.xml, jmh.args) to see the allocation rate per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"4", "5", "6"})
+    public int featureCount;
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"Combinations", "PairCompletion", "BitSliced"})
+    public String setFinder;
+
+    @Param({"12"})
+    public int tableSize;
+
+    private Util util;
+    private int[][] candidates;
+    private List<Integer> table;
+    private List<Integer> deck;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("SetFinder", setFinder);
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        util = Main.createUtil(logger, config);
+
+        Random random = new Random(featureCount * 31L + featureSize);
+        List<Integer> cards = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toCollection(ArrayList::new));
+        Collections.shuffle(cards, random);
+        deck = cards;
+        table = new ArrayList<>(cards.subList(0, tableSize));
+
+        // a mix of legal sets and random cards, so the branches of testSet are not trivially predictable
+        candidates = new int[SAMPLES][featureSize];
+        for (int[] candidate : candidates)
+            for (int i = 0; i < featureSize; ++i)
+                candidate[i] = random.nextInt(config.deckSize);
+        for (int i = 0; i < SAMPLES; i += 2)
+            if (featureSize >= 3)
+                candidates[i][featureSize - 1] = Math.max(config.featureTable.completeSet(candidates[i], featureSize - 1), 0);
+    }
+
+    private int[] nextCandidate() {
+        next = (next + 1) & (SAMPLES - 1);
+        return candidates[next];
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(nextCandidate());
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(nextCandidate());
+    }
+
+    @Benchmark
+    public List<int[]> findSetsTable() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The end of game check before the deck-wide set index (a single set anywhere in the deck).
+     */
+    @Benchmark
+    public List<int[]> findSetsDeckFirst() {
+        return util.findSets(deck, 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void findSetsDeckAll(Blackhole blackhole) {
+        blackhole.consume(util.findSets(deck, Integer.MAX_VALUE));
+    }
+}
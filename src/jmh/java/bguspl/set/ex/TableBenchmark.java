@@ -0,0 +1,98 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Main;
+import bguspl.set.UserInterfaceNoOp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks for the Table operations on the player and dealer paths, with a user interface that does nothing, so
+ * only the table itself (locking, bookkeeping and the set index) is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    @Param({"4", "5", "6"})
+    public int featureCount;
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"3"})
+    public int rows;
+
+    @Param({"4"})
+    public int columns;
+
+    @Param({"4"})
+    public int players;
+
+    private Config config;
+    private Table table;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("Rows", Integer.toString(rows));
+        properties.put("Columns", Integer.toString(columns));
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players));
+        properties.put("TableDelaySeconds", "0");
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        config = new Config(logger, properties);
+        table = new Table(new Env(logger, config, new UserInterfaceNoOp(), Main.createUtil(logger, config)));
+        for (int slot = 0; slot < config.tableSize; ++slot)
+            table.placeCardFromDeck(slot);
+    }
+
+    /**
+     * Each benchmark thread plays as a different player.
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        private static final AtomicInteger ids = new AtomicInteger();
+        int player;
+
+        @Setup
+        public void setUp(TableBenchmark benchmark) {
+            player = ids.getAndIncrement() % benchmark.players;
+        }
+    }
+
+    @Benchmark
+    public boolean token(PlayerState state) {
+        return table.token(state.player, ThreadLocalRandom.current().nextInt(config.tableSize));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tokenContended(PlayerState state) {
+        return table.token(state.player, ThreadLocalRandom.current().nextInt(config.tableSize));
+    }
+
+    /**
+     * A card is removed from a slot (back to the deck, so the deck never runs out) and another one is placed in it.
+     */
+    @Benchmark
+    public int removeCardAndPlaceCard() {
+        int slot = ThreadLocalRandom.current().nextInt(config.tableSize);
+        table.removeCardAndReturnToDeck(slot);
+        table.placeCardFromDeck(slot);
+        return table.countSets();
+    }
+}
@@ -0,0 +1,161 @@
+package bguspl.set;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands the records over to another handler on a background writer thread, so the threads that
+ * log (the dealer, the players and the Swing event thread) never wait for formatting or for the disk. Records go
+ * through a bounded ring buffer; when it is full they are either dropped (and counted, with a warning written once
+ * there is room again) or the logging thread waits for room, depending on the overflow policy.
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * What to do with a record when the buffer is full.
+     */
+    public enum Overflow {
+        DROP, BLOCK
+    }
+
+    /**
+     * A request to flush, answered by the writer once all the records before it were written.
+     */
+    private static class FlushRequest extends LogRecord {
+        private static final long serialVersionUID = 1L;
+
+        final transient CountDownLatch done = new CountDownLatch(1); // never serialized, it only lives in the buffer
+
+        FlushRequest() {
+            super(Level.OFF, null);
+        }
+    }
+
+    private static final long FLUSH_TIMEOUT_SECONDS = 5;
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> buffer;
+    private final Overflow overflow;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    /**
+     * @param target   - the handler that writes the records.
+     * @param capacity - the number of records the buffer holds.
+     * @param overflow - what to do with a record when the buffer is full.
+     */
+    public AsyncHandler(Handler target, int capacity, Overflow overflow) {
+        this.target = target;
+        this.overflow = overflow;
+        buffer = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void write() {
+        long reported = 0;
+        try {
+            while (true) {
+                LogRecord record = buffer.poll();
+                if (record == null) { // idle: a good time to flush the target
+                    target.flush();
+                    record = buffer.take();
+                }
+
+                long lost = dropped.sum();
+                if (lost > reported) {
+                    LogRecord warning = new LogRecord(Level.WARNING, "{0,number,#} log records were dropped (buffer full)");
+                    warning.setParameters(new Object[]{lost - reported});
+                    target.publish(warning);
+                    reported = lost;
+                }
+
+                if (record instanceof FlushRequest) {
+                    target.flush();
+                    ((FlushRequest) record).done.countDown();
+                    if (closed)
+                        return;
+                } else
+                    target.publish(record);
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+
+        if (overflow == Overflow.DROP) {
+            if (!buffer.offer(record))
+                dropped.increment();
+            return;
+        }
+
+        try {
+            buffer.put(record);
+        } catch (InterruptedException e) {
+            dropped.increment();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits (for a few seconds at most) until all the records published so far were written and flushed.
+     */
+    @Override
+    public void flush() {
+        if (!writer.isAlive())
+            return;
+        FlushRequest request = new FlushRequest();
+        try {
+            if (buffer.offer(request, FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                request.done.await(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all the records published so far, stops the writer and closes the target handler.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+        writer.interrupt();
+        target.close();
+    }
+
+    /**
+     * The formatter is used by the target handler (on the writer thread).
+     */
+    @Override
+    public synchronized void setFormatter(Formatter formatter) {
+        target.setFormatter(formatter);
+    }
+
+    @Override
+    public Formatter getFormatter() {
+        return target.getFormatter();
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full.
+     *
+     * @return - the number of records dropped.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,231 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The card images of the user interface, decoded in the background by a pool of loader threads and kept in a
+ * least-recently-used cache bounded by memory, so neither the startup time nor the heap grow with the deck size.
+ * The images are scaled to the cell size, in a format compatible with the screen, so drawing one is a plain copy.
+ * An image asked for that is not in the cache is loaded ahead of the images prefetched at startup, and the caller is
+ * told when it is ready.
+ */
+class CardImages {
+
+    /**
+     * The load priorities: images asked for (e.g. dealt to the table) before the ones prefetched.
+     */
+    private static final int REQUESTED = 0;
+    private static final int PREFETCHED = 1;
+
+    private final Logger logger;
+    private final Config config;
+    private final IntConsumer loaded;
+    private final int capacity;
+    private final Image empty;
+
+    /**
+     * The decoded images by card, in access order (the least recently used first).
+     */
+    private final Map<Integer, Image> cache;
+
+    /**
+     * The cards being decoded, and the cards requested but not yet loaded (so they are only queued once).
+     */
+    private final Set<Integer> loading = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> requested = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor loader;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param logger - the logger to report errors to.
+     * @param config - the game configuration.
+     * @param loaded - called (on a loader thread) with every card whose image was loaded.
+     */
+    CardImages(Logger logger, Config config, IntConsumer loaded) {
+        this.logger = logger;
+        this.config = config;
+        this.loaded = loaded;
+        capacity = capacity(config);
+        cache = new LinkedHashMap<Integer, Image>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        empty = scaleToCell(decode("cards/empty_card.png"));
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        loader = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "card-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        loader.allowCoreThreadTimeOut(true);
+
+        // fill the cache in the background
+        for (int card = 0; card < Math.min(capacity, config.deckSize); ++card)
+            loader.execute(new Load(card, PREFETCHED));
+    }
+
+    /**
+     * Returns the number of images the cache holds: as many as fit in CardImageCacheMegabytes, but at least twice the
+     * table size, so the cards on the table stay cached.
+     *
+     * @param config - the game configuration.
+     * @return - the capacity of the cache.
+     */
+    static int capacity(Config config) {
+        long imageBytes = (long) config.cellWidth * config.cellHeight * Integer.BYTES;
+        return (int) Math.max(2L * config.tableSize, Math.min(config.cardImageCacheBytes / imageBytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return - the image of an empty slot.
+     */
+    Image empty() {
+        return empty;
+    }
+
+    /**
+     * Returns the image of a card if it is cached, otherwise requests it.
+     *
+     * @param card - the card.
+     * @return - the image, or null if it is not loaded yet.
+     */
+    Image get(int card) {
+        Image image;
+        synchronized (cache) {
+            image = cache.get(card);
+        }
+        if (image == null)
+            request(card);
+        return image;
+    }
+
+    /**
+     * Loads the image of a card ahead of the prefetched ones, unless it is cached or already requested.
+     *
+     * @param card - the card.
+     */
+    void request(int card) {
+        if (!cached(card) && requested.add(card))
+            loader.execute(new Load(card, REQUESTED));
+    }
+
+    /**
+     * @return - the number of images in the cache.
+     */
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Stops loading images (any later request is ignored).
+     */
+    void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private boolean cached(int card) {
+        synchronized (cache) {
+            return cache.containsKey(card);
+        }
+    }
+
+    private BufferedImage decode(String filename) {
+        URL imageResource = getClass().getClassLoader().getResource(filename);
+        if (imageResource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            BufferedImage image = ImageIO.read(imageResource);
+            if (image == null)
+                throw new IOException("unsupported image format");
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read " + filename, e);
+        }
+    }
+
+    /**
+     * Returns a copy of an image scaled to the cell size, in a format compatible with the screen (if there is one).
+     */
+    private Image scaleToCell(Image image) {
+        BufferedImage scaled;
+        if (GraphicsEnvironment.isHeadless())
+            scaled = new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        else
+            scaled = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                    .createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, config.cellWidth, config.cellHeight, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * The decoding of a card image, ordered by priority and then first come, first served.
+     */
+    private class Load implements Runnable, Comparable<Load> {
+
+        private final int card;
+        private final int priority;
+        private final long order = sequence.getAndIncrement();
+
+        private Load(int card, int priority) {
+            this.card = card;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Load other) {
+            return priority != other.priority ? Integer.compare(priority, other.priority) : Long.compare(order, other.order);
+        }
+
+        @Override
+        public void run() {
+            if (cached(card) || !loading.add(card)) {
+                requested.remove(card);
+                return;
+            }
+            try {
+                String filename = config.featureTable.appendName(card, new StringBuilder("cards/")).append(".png").toString();
+                Image image = scaleToCell(decode(filename));
+                synchronized (cache) {
+                    cache.put(card, image);
+                }
+                requested.remove(card);
+                loaded.accept(card);
+            } catch (RuntimeException e) {
+                // left requested, so it is not retried on every paint
+                logger.log(Level.SEVERE, "cannot load the image of card " + card, e);
+            } finally {
+                loading.remove(card);
+            }
+        }
+    }
+}
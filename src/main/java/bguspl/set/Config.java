@@ -36,6 +36,18 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The features of every card in the deck, decoded once (see FeatureTable)
+     */
+    public final FeatureTable featureTable;
+
+    /**
+     * The algorithm used by Util::findSets ("Combinations" tests every combination of cards, "PairCompletion" looks up
+     * the card completing every featureSize - 1 cards, "BitSliced" does too, and tests sets on cards encoded as bit
+     * vectors)
+     */
+    public final String setFinder;
+
     /**
      * The number of human players in the game.
      */
@@ -51,6 +63,37 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * The range of the time (in milliseconds) a computer player takes for each key press, drawn uniformly for every
+     * key press and restarted whenever the cards on the table change
+     */
+    public final long computerReactionMinMillis;
+    public final long computerReactionMaxMillis;
+
+    /**
+     * How the players run: "Threads" (a thread per player, and another one per computer player), "Executor" (short
+     * tasks on a shared pool of playerExecutorThreads threads) or "Virtual" (short tasks on virtual threads, where the
+     * runtime supports them, otherwise as "Executor")
+     */
+    public final String playerExecution;
+
+    /**
+     * The number of worker threads in the "Executor" player execution mode (0 for the number of cores)
+     */
+    public final int playerExecutorThreads;
+
+    /**
+     * The directory the game journal (a binary record of every event of the game) is written to (empty for none), and
+     * the size (in bytes) at which a journal file is closed and the next one is started
+     */
+    public final String journalDirectory;
+    public final long journalFileMaxBytes;
+
+    /**
+     * The local port the engine metrics are served on over HTTP, at /metrics (0 for none)
+     */
+    public final int metricsPort;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -77,7 +120,8 @@ public class Config {
     public final long pointFreezeMillis;
 
     /**
-     * The number of milliseconds to delay before removing/placing a card on the table
+     * The number of milliseconds the display waits before showing a card removed from/placed on the table (the
+     * table itself changes immediately)
      */
     public final long tableDelayMillis;
 
@@ -132,6 +176,17 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The memory (in bytes) the decoded card images may take (at least twice the table size of them are kept)
+     */
+    public final long cardImageCacheBytes;
+
+    /**
+     * The maximum number of times a second the display is updated, with all the changes since the last update (0 for
+     * no limit)
+     */
+    public final int maxFps;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +210,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -197,11 +252,21 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        featureTable = new FeatureTable(featureCount, featureSize, deckSize);
+        setFinder = properties.getProperty("SetFinder", "PairCompletion").trim();
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        computerReactionMinMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionMinSeconds", "0.2")) * 1000.0);
+        computerReactionMaxMillis = Math.max(computerReactionMinMillis,
+                (long) (Double.parseDouble(properties.getProperty("ComputerReactionMaxSeconds", "0.8")) * 1000.0));
+        playerExecution = properties.getProperty("PlayerExecution", "Threads").trim();
+        playerExecutorThreads = Integer.parseInt(properties.getProperty("PlayerExecutorThreads", "0"));
+        journalDirectory = properties.getProperty("JournalDirectory", "").trim();
+        journalFileMaxBytes = (long) (Double.parseDouble(properties.getProperty("JournalFileMegabytes", "64")) * 1024 * 1024);
+        metricsPort = Integer.parseInt(properties.getProperty("MetricsPort", "0"));
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
@@ -224,6 +289,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        maxFps = Integer.parseInt(properties.getProperty("MaxFps", "60"));
+        cardImageCacheBytes = (long) (Double.parseDouble(properties.getProperty("CardImageCacheMegabytes", "32")) * 1024 * 1024);
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
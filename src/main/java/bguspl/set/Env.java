@@ -8,11 +8,20 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameJournal journal;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameJournal journal) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.journal = journal;
+    }
+
+    /**
+     * Creates an environment that keeps no journal.
+     */
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new GameJournalNoOp());
     }
 }
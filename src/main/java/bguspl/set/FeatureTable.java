@@ -0,0 +1,125 @@
+package bguspl.set;
+
+/**
+ * A precomputed table of the features of every card in the deck, packed into a single primitive array
+ * (deckSize x featureCount, one byte per feature). Built once per configuration so that decoding a card on a hot path
+ * is a plain array read instead of repeated division by featureSize.
+ * Features of up to 256 values are supported, and completeSet supports up to MAX_COMPLETION_SIZE values (see
+ * completesSets): the set finders fall back to testing combinations of cards above it.
+ *
+ * @inv features[card * featureCount + i] == the i-th feature of card (most significant first)
+ */
+public class FeatureTable {
+
+    /**
+     * The most values per feature completeSet supports (the values a feature takes are collected in an int bitmask).
+     */
+    public static final int MAX_COMPLETION_SIZE = Integer.SIZE - 1;
+
+    /**
+     * The number of features on the cards.
+     */
+    public final int featureCount;
+
+    /**
+     * The number of choices for each feature.
+     */
+    public final int featureSize;
+
+    /**
+     * The total number of cards in the deck.
+     */
+    public final int deckSize;
+
+    /**
+     * The packed features of all the cards in the deck.
+     */
+    private final byte[] features;
+
+    public FeatureTable(int featureCount, int featureSize, int deckSize) {
+        if (featureSize > 1 << Byte.SIZE)
+            throw new IllegalArgumentException("FeatureTable supports up to 256 values per feature, got " + featureSize);
+        this.featureCount = featureCount;
+        this.featureSize = featureSize;
+        this.deckSize = deckSize;
+
+        features = new byte[deckSize * featureCount];
+        for (int card = 0; card < deckSize; ++card)
+            for (int i = featureCount - 1, id = card; i >= 0; --i, id /= featureSize)
+                features[card * featureCount + i] = (byte) (id % featureSize);
+    }
+
+    /**
+     * Returns a single feature of a card.
+     *
+     * @param card    - the card id.
+     * @param feature - the index of the feature (between 0 and featureCount - 1).
+     * @return - the value of the feature (between 0 and featureSize - 1).
+     */
+    public int feature(int card, int feature) {
+        return features[card * featureCount + feature] & 0xFF;
+    }
+
+    /**
+     * Copies the features of a card into an existing array.
+     *
+     * @param card - the card id.
+     * @param dest - an array of at least featureCount entries.
+     */
+    public void copyFeatures(int card, int[] dest) {
+        for (int i = 0, offset = card * featureCount; i < featureCount; ++i)
+            dest[i] = features[offset + i] & 0xFF;
+    }
+
+    /**
+     * Checks whether sets of a feature size can be found by completion: any featureSize - 1 cards determine the only
+     * card completing them (featureSize of at least 3), and completeSet supports the size.
+     *
+     * @param featureSize - the number of values of every feature.
+     * @return - true iff completeSet can be used for the feature size.
+     */
+    public static boolean completesSets(int featureSize) {
+        return featureSize >= 3 && featureSize <= MAX_COMPLETION_SIZE;
+    }
+
+    /**
+     * Computes the card that completes the given cards to a legal set.
+     *
+     * @param cards  - an array of card ids.
+     * @param length - the number of cards to use from the array (featureSize - 1, at least 2).
+     * @return - the id of the completing card, or -1 if no card can complete them.
+     * @pre - completesSets(featureSize).
+     */
+    public int completeSet(int[] cards, int length) {
+        int card = 0;
+        int all = (1 << featureSize) - 1;
+        for (int i = 0; i < featureCount; ++i) {
+            int seen = 0; // bitmask of the values this feature takes in the given cards
+            for (int j = 0; j < length; ++j)
+                seen |= 1 << feature(cards[j], i);
+            int count = Integer.bitCount(seen);
+            int value;
+            if (count == 1) // sameSame: the completing card takes the same value
+                value = Integer.numberOfTrailingZeros(seen);
+            else if (count == length) // butDifferent: the completing card takes the only value left
+                value = Integer.numberOfTrailingZeros(~seen & all);
+            else
+                return -1;
+            card = card * featureSize + value;
+        }
+        return card;
+    }
+
+    /**
+     * Appends the features of a card to a StringBuilder as digits in base featureSize (e.g. "0212").
+     *
+     * @param card - the card id.
+     * @param sb   - the StringBuilder to append to.
+     * @return - the StringBuilder.
+     */
+    public StringBuilder appendName(int card, StringBuilder sb) {
+        for (int i = 0, offset = card * featureCount; i < featureCount; ++i)
+            sb.append(Character.forDigit(features[offset + i] & 0xFF, featureSize));
+        return sb;
+    }
+}
@@ -0,0 +1,49 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Arrays;
+
+/**
+ * A single game: its environment and the game entities created in it. Games do not share any mutable state, so any
+ * number of them can run in the same JVM.
+ */
+public class Game {
+
+    public final Env env;
+    public final Table table;
+    public final Dealer dealer;
+    public final Player[] players;
+
+    /**
+     * Creates the game entities.
+     *
+     * @param env     - the game environment objects.
+     * @param players - an array of config.players entries to fill with the players (it may already be referenced by
+     *                the user interface).
+     */
+    public Game(Env env, Player[] players) {
+        this.env = env;
+        this.players = players;
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+    }
+
+    public Game(Env env) {
+        this(env, new Player[env.config.players]);
+    }
+
+    /**
+     * Returns the ids of the players with the top score (more than one in case of a tie).
+     *
+     * @return - the winners of the game.
+     */
+    public int[] winners() {
+        int topScore = Arrays.stream(players).mapToInt(Player::score).max().orElse(0);
+        return Arrays.stream(players).filter(player -> player.score() == topScore).mapToInt(player -> player.id).toArray();
+    }
+}
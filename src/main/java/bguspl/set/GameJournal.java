@@ -0,0 +1,129 @@
+package bguspl.set;
+
+/**
+ * A record of every event of a game, for auditing and debugging: the changes to the cards and the tokens on the table,
+ * the set claims and the dealer's verdicts, the freezes of the players and the countdown resets. Each event is a fixed
+ * width record of a nanosecond timestamp (System.nanoTime), an event type and up to three int arguments (see the event
+ * types below for their meaning; unused arguments are 0).
+ * Events are recorded by the game threads as they happen, so recording must be cheap and must never block for long.
+ * The journal keeps the order of the events of each thread, and the card changes are recorded under the slot locks, so
+ * every token event is in order with the card changes of its slot. The token events of different players on the same
+ * slot are not ordered with each other (the players change their tokens concurrently, under the shared lock), which
+ * does not matter for a replay: a player's token on a slot depends only on the player's own events and the card's.
+ */
+public interface GameJournal {
+
+    /**
+     * The size (in bytes) of a record: the timestamp (long), the event type and the three arguments (ints).
+     */
+    int RECORD_SIZE = Long.BYTES + 4 * Integer.BYTES;
+
+    /**
+     * The game started: players, tableSize, deckSize.
+     */
+    int GAME_START = 1;
+
+    /**
+     * A card was placed on the table: slot, card.
+     */
+    int CARD_PLACED = 2;
+
+    /**
+     * A card was removed from the game (e.g. a collected set): slot, card.
+     */
+    int CARD_REMOVED = 3;
+
+    /**
+     * A card was returned from the table to the deck: slot, card.
+     */
+    int CARD_RETURNED = 4;
+
+    /**
+     * The deck was shuffled.
+     */
+    int DECK_SHUFFLED = 5;
+
+    /**
+     * A player placed a token: player, slot, card.
+     */
+    int TOKEN_PLACED = 6;
+
+    /**
+     * A token of a player was removed (by the player, or with the card under it): player, slot, card.
+     */
+    int TOKEN_REMOVED = 7;
+
+    /**
+     * All the tokens were removed from the table.
+     */
+    int TOKENS_CLEARED = 8;
+
+    /**
+     * A card of a set claim, in a record per card, timestamped when the claim was made: player, slot, card. The
+     * verdict on the claim follows in the journal.
+     */
+    int CLAIM = 9;
+
+    /**
+     * The dealer awarded a point for a claim: player.
+     */
+    int POINT = 10;
+
+    /**
+     * The dealer penalized a claim that is not a legal set: player.
+     */
+    int PENALTY = 11;
+
+    /**
+     * The dealer dropped a claim whose cards changed before it was checked: player.
+     */
+    int REJECTED = 12;
+
+    /**
+     * A player was frozen: player, millis.
+     */
+    int FREEZE = 13;
+
+    /**
+     * The countdown was reset: the turn timeout in milliseconds (0 for a clock counting up).
+     */
+    int TIMER_RESET = 14;
+
+    /**
+     * The game ended: the top score and the number of winners.
+     */
+    int GAME_END = 15;
+
+    /**
+     * Records an event that happens now.
+     *
+     * @param type - the event type.
+     * @param a    - the first argument.
+     * @param b    - the second argument.
+     * @param c    - the third argument.
+     */
+    default void record(int type, int a, int b, int c) {
+        record(System.nanoTime(), type, a, b, c);
+    }
+
+    /**
+     * Records an event that happened at some time.
+     *
+     * @param nanoTime - the time of the event (System.nanoTime).
+     * @param type     - the event type.
+     * @param a        - the first argument.
+     * @param b        - the second argument.
+     * @param c        - the third argument.
+     */
+    void record(long nanoTime, int type, int a, int b, int c);
+
+    /**
+     * Writes out the events recorded so far.
+     */
+    void flush();
+
+    /**
+     * Writes out the events recorded so far and stops recording.
+     */
+    void close();
+}
@@ -0,0 +1,253 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A game journal written to binary files. Records are appended to a direct buffer, and each full buffer is handed to a
+ * background writer thread, which writes it to the file and returns it to a pool of free buffers. So recording an
+ * event costs a few stores under an uncontended lock, and the game threads never wait for the file system: a slow
+ * disk only uses up more buffers (up to MAX_BUFFERS, after which records are dropped and counted until one is free).
+ * Once a file reaches the maximum size the next one is started (name-000.journal, name-001.journal etc.).
+ * Each file starts with a header of HEADER_SIZE bytes: the magic number, the format version, the sequence number of the
+ * file, the features (count and size), the table size and the number of players (ints), a reserved int, and the time
+ * the journal was started as System.currentTimeMillis and as System.nanoTime (longs), to convert the timestamps of the
+ * records with. The records follow, RECORD_SIZE bytes each (see GameJournal). All the numbers are big-endian.
+ */
+public class GameJournalFile implements GameJournal {
+
+    public static final int MAGIC = 0x5345544A; // "SETJ"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8 * Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * The size of the buffers the records are collected in before they are written, and the most buffers allocated.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_BUFFERS = 64;
+
+    /**
+     * Handed to the writer after the last buffer, to close the file.
+     */
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final Logger logger;
+    private final Config config;
+    private final Path directory;
+    private final String name;
+    private final long maxFileBytes;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The buffers waiting to be written (in order), and the ones written and free to reuse.
+     */
+    private final BlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ByteBuffer> free = new LinkedBlockingQueue<>();
+
+    /**
+     * The buffer records are appended to (null if there was no free one), the number of buffers allocated, and the
+     * records dropped for lack of a buffer (guarded by this).
+     */
+    private ByteBuffer buffer;
+    private int buffers;
+    private long dropped;
+    private boolean closed = false;
+
+    /**
+     * Set by the writer if the file cannot be written: the journal stops recording.
+     */
+    private volatile boolean failed = false;
+
+    /**
+     * The file being written (null once it is closed), its sequence number and the bytes written to it (used by the
+     * writer thread only, after the first file is opened).
+     */
+    private FileChannel channel;
+    private int sequence = 0;
+    private long fileBytes;
+
+    private final Thread writer;
+
+    /**
+     * @param logger       - the logger to report write errors to.
+     * @param config       - the game configuration.
+     * @param directory    - the directory to write the files in.
+     * @param name         - the name of the journal (the files are named after it).
+     * @param maxFileBytes - the size at which a file is closed and the next one is started.
+     * @throws IOException - if the first file cannot be created.
+     */
+    public GameJournalFile(Logger logger, Config config, Path directory, String name, long maxFileBytes) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.directory = directory;
+        this.name = name;
+        this.maxFileBytes = maxFileBytes;
+        Files.createDirectories(directory);
+        open();
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffers = 1;
+        writer = new Thread(this::write, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the path of a journal file.
+     *
+     * @param directory - the directory of the journal.
+     * @param name      - the name of the journal.
+     * @param sequence  - the sequence number of the file.
+     * @return - the path of the file.
+     */
+    public static Path file(Path directory, String name, int sequence) {
+        return directory.resolve(String.format("%s-%03d.journal", name, sequence));
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file(directory, name, sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sequence)
+                .putInt(config.featureCount).putInt(config.featureSize).putInt(config.tableSize).putInt(config.players)
+                .putInt(0).putLong(startMillis).putLong(startNanos);
+        header.flip();
+        fileBytes = 0;
+        writeFully(header);
+    }
+
+    @Override
+    public synchronized void record(long nanoTime, int type, int a, int b, int c) {
+        if (closed || failed)
+            return;
+        if (buffer == null || buffer.remaining() < RECORD_SIZE) {
+            if (buffer != null)
+                full.add(buffer);
+            buffer = nextBuffer();
+            if (buffer == null) {
+                ++dropped;
+                return;
+            }
+        }
+        buffer.putLong(nanoTime).putInt(type).putInt(a).putInt(b).putInt(c);
+    }
+
+    /**
+     * Returns a free buffer, allocating one if there is none and MAX_BUFFERS were not allocated yet (guarded by this).
+     *
+     * @return - the buffer, or null if there is none.
+     */
+    private ByteBuffer nextBuffer() {
+        ByteBuffer next = free.poll();
+        if (next == null && buffers < MAX_BUFFERS) {
+            ++buffers;
+            next = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return next;
+    }
+
+    /**
+     * The writer thread: writes the full buffers in order, until the journal is closed. Once the current file reaches
+     * the maximum size, the next one is started before the next buffer is written (so no file is left empty).
+     */
+    private void write() {
+        try {
+            for (ByteBuffer next = full.take(); next != CLOSE; next = full.take()) {
+                if (channel != null) {
+                    if (fileBytes >= maxFileBytes && fileBytes > HEADER_SIZE)
+                        roll();
+                    next.flip();
+                    if (channel != null)
+                        writeFully(next);
+                }
+                next.clear();
+                free.add(next);
+            }
+        } catch (InterruptedException ignored) {
+        }
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.severe("error closing the game journal: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Writes a buffer to the file. On an error the journal is closed, so a full disk never stops the game.
+     */
+    private void writeFully(ByteBuffer data) {
+        try {
+            while (data.hasRemaining())
+                fileBytes += channel.write(data);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the current file and starts the next one.
+     */
+    private void roll() {
+        try {
+            channel.close();
+            ++sequence;
+            open();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        logger.severe("error writing the game journal: " + e.getMessage() + ". The journal is closed.");
+        failed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    /**
+     * Hands the records collected so far to the writer (they are written in the background).
+     */
+    @Override
+    public synchronized void flush() {
+        if (closed || buffer == null || buffer.position() == 0)
+            return;
+        full.add(buffer);
+        buffer = nextBuffer();
+    }
+
+    /**
+     * Hands the records collected so far to the writer, and waits for it to write them and close the file.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            if (buffer != null && buffer.position() > 0)
+                full.add(buffer);
+            buffer = null;
+            full.add(CLOSE);
+            if (dropped > 0)
+                logger.severe("warning: " + dropped + " game journal records were dropped (the disk was too slow)");
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
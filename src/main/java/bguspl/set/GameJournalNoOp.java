@@ -0,0 +1,20 @@
+package bguspl.set;
+
+/**
+ * An implementation of the GameJournal interface that ignores all the events. Used when the journal is turned off, and
+ * for games that need no record (e.g. simulations and tests).
+ */
+public class GameJournalNoOp implements GameJournal {
+
+    @Override
+    public void record(int type, int a, int b, int c) {}
+
+    @Override
+    public void record(long nanoTime, int type, int a, int b, int c) {}
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,103 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative long values (e.g. latencies in nanoseconds). Values are counted in buckets
+ * that split every power of two into SUB_BUCKETS equal parts, so a percentile is reported within 1/SUB_BUCKETS of the
+ * actual value, whatever its magnitude, in a fixed array of counters: recording a value is a few bit operations and
+ * an atomic increment, and never allocates or blocks. Percentiles are computed when the histogram is read, from
+ * counters that may still be changing, so they are approximate while values are being recorded.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Returns the bucket of a value: values under SUB_BUCKETS have a bucket each, and every power of two above them is
+     * split into SUB_BUCKETS buckets by the bits that follow the highest one.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the lowest value counted in a bucket.
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (1L << exponent) | ((long) (bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS));
+    }
+
+    /**
+     * Records a value (negative values are recorded as 0).
+     *
+     * @param value - the value.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long mean() {
+        long count = count();
+        return count == 0 ? 0 : sum() / count;
+    }
+
+    /**
+     * Returns a percentile of the values recorded.
+     *
+     * @param quantile - the quantile (e.g. 0.99 for the 99th percentile).
+     * @return - the highest value of the bucket the percentile falls in (at most the maximum recorded), or 0 if no
+     * values were recorded.
+     */
+    public long percentile(double quantile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            total += counts[i] = buckets.get(i);
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max((long) Math.ceil(quantile * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank)
+                return i + 1 < BUCKETS ? Math.min(lowestValue(i + 1) - 1, max()) : max();
+        }
+        return max();
+    }
+}
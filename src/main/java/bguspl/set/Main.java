@@ -2,10 +2,12 @@ package bguspl.set;
 
 import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
+import com.sun.net.httpserver.HttpServer;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -17,14 +19,23 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
-    private static Thread mainThread;
+    /**
+     * The number of log records buffered for the log file before new ones are dropped.
+     */
+    private static final int LOG_BUFFER_CAPACITY = 8192;
 
-    private static boolean xButtonPressed = false;
-    private static Logger logger;
+    private final Logger logger;
+    private final Thread mainThread;
+    private volatile Dealer dealer;
+    private volatile boolean xButtonPressed = false;
 
-    public static void xButtonPressed() throws InterruptedException {
-        if (logger != null) logger.severe("exit button pressed");
+    private Main(Logger logger) {
+        this.logger = logger;
+        this.mainThread = Thread.currentThread();
+    }
+
+    public void xButtonPressed() throws InterruptedException {
+        logger.severe("exit button pressed");
         xButtonPressed = true;
         if (dealer != null) dealer.terminate();
         mainThread.join();
@@ -36,19 +47,22 @@ public class Main {
      * @param args - unused.
      */
     public static void main(String[] args) {
+        new Main(initLogger()).run();
+    }
 
-        mainThread = Thread.currentThread();
+    private void run() {
 
         // create the game environment objects
-        logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Util util = createUtil(logger, config);
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, players, this);
+            ui = new UserInterfaceDispatcher(ui, config);
+            if (config.tableDelayMillis > 0) ui = new UserInterfaceAnimator(ui, config.tableDelayMillis);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
@@ -56,14 +70,15 @@ public class Main {
                 logger.severe("warning: running with human players with no user interface");
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
+        GameJournal journal = createJournal(logger, config, new SimpleDateFormat("M-d_HH-mm-ss").format(new Date()));
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, journal);
+        Metrics.registerMBean(logger);
+        HttpServer metricsServer = config.metricsPort > 0 ? Metrics.serve(config.metricsPort, logger) : null;
 
         // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        Game game = new Game(env, players);
+        dealer = game.dealer;
 
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
@@ -79,10 +94,52 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            journal.close();
+            if (metricsServer != null) metricsServer.stop(0);
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    /**
+     * Creates the Util implementation selected by config.setFinder.
+     *
+     * @param logger - the logger to report an unknown selection to.
+     * @param config - the game configuration.
+     * @return - the Util implementation.
+     */
+    public static Util createUtil(Logger logger, Config config) {
+        switch (config.setFinder) {
+            case "Combinations":
+                return new UtilImpl(config);
+            case "PairCompletion":
+                return new UtilPairCompletion(config);
+            case "BitSliced":
+                return new UtilBitSliced(config);
+            default:
+                logger.severe("warning: unknown set finder " + config.setFinder + ". Using PairCompletion.");
+                return new UtilPairCompletion(config);
+        }
+    }
+
+    /**
+     * Creates the game journal selected by config.journalDirectory.
+     *
+     * @param logger - the logger to report errors to.
+     * @param config - the game configuration.
+     * @param name   - the name of the journal files.
+     * @return - the game journal (a journal that records nothing if it is turned off or cannot be created).
+     */
+    public static GameJournal createJournal(Logger logger, Config config, String name) {
+        if (config.journalDirectory.isEmpty())
+            return new GameJournalNoOp();
+        try {
+            return new GameJournalFile(logger, config, Paths.get(config.journalDirectory), name, config.journalFileMaxBytes);
+        } catch (IOException | InvalidPathException e) {
+            logger.severe("warning: cannot create the game journal: " + e.getMessage() + ". Running without it.");
+            return new GameJournalNoOp();
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
@@ -98,7 +155,7 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncHandler(handler, LOG_BUFFER_CAPACITY, AsyncHandler.Overflow.DROP));
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -108,11 +165,11 @@ public class Main {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // not synchronized: each handler formats on a single thread (the writer thread of an AsyncHandler), and
+            // the parameters of a message are only formatted here, for the records that are actually written
             @Override
-            public synchronized String format(LogRecord lr) {
-                return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
-                );
+            public String format(LogRecord lr) {
+                return String.format(format, lr.getMillis(), lr.getLevel().getLocalizedName(), formatMessage(lr));
             }
         }));
         logger.setLevel(level);
@@ -0,0 +1,209 @@
+package bguspl.set;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The registry of the engine metrics: counters (LongAdder) and histograms (Histogram), by name. The metrics are shared
+ * by all the games in the JVM, and recording one never blocks. They can be read as a snapshot of named values, through
+ * the platform MBean server (bguspl.set:type=Metrics) and through a small HTTP endpoint on the loopback interface
+ * (/metrics, a "name value" line per value).
+ */
+public final class Metrics {
+
+    private static final Map<String, Object> registry = new ConcurrentSkipListMap<>();
+
+    /**
+     * The time (in nanoseconds) from a set claim to the dealer's point or penalty.
+     */
+    public static final Histogram CLAIM_LATENCY = histogram("claim_latency_nanos");
+
+    /**
+     * The set claims the dealer resolved, by verdict.
+     */
+    public static final LongAdder CLAIM_POINTS = counter("claim_points");
+    public static final LongAdder CLAIM_PENALTIES = counter("claim_penalties");
+    public static final LongAdder CLAIM_REJECTIONS = counter("claim_rejections");
+
+    /**
+     * The time (in nanoseconds) spent waiting for and holding the lock of the cards on the table, per change.
+     */
+    public static final Histogram TABLE_LOCK_WAIT = histogram("table_lock_wait_nanos");
+    public static final Histogram TABLE_LOCK_HOLD = histogram("table_lock_hold_nanos");
+
+    /**
+     * The iterations of the dealer loop, and the times the dealer was woken with nothing to do.
+     */
+    public static final LongAdder DEALER_ITERATIONS = counter("dealer_iterations");
+    public static final LongAdder DEALER_IDLE_WAKEUPS = counter("dealer_idle_wakeups");
+
+    /**
+     * The reshuffles (all the cards returned to the deck and dealt again), and their duration in nanoseconds.
+     */
+    public static final Histogram RESHUFFLE_DURATION = histogram("dealer_reshuffle_nanos");
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99"};
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with a name, registering it if there is none.
+     *
+     * @param name - the name of the counter.
+     * @return - the counter.
+     */
+    public static LongAdder counter(String name) {
+        return (LongAdder) registry.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Returns the histogram with a name, registering it if there is none.
+     *
+     * @param name - the name of the histogram.
+     * @return - the histogram.
+     */
+    public static Histogram histogram(String name) {
+        return (Histogram) registry.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Returns the current values of all the metrics: the value of each counter, and the count, mean, percentiles and
+     * maximum of each histogram (as name_count, name_mean, name_p50 etc.).
+     *
+     * @return - the values, sorted by name.
+     */
+    public static SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Object> metric : registry.entrySet()) {
+            String name = metric.getKey();
+            if (metric.getValue() instanceof LongAdder)
+                values.put(name, ((LongAdder) metric.getValue()).sum());
+            else {
+                Histogram histogram = (Histogram) metric.getValue();
+                values.put(name + "_count", histogram.count());
+                values.put(name + "_mean", histogram.mean());
+                for (int i = 0; i < PERCENTILES.length; ++i)
+                    values.put(name + '_' + PERCENTILE_NAMES[i], histogram.percentile(PERCENTILES[i]));
+                values.put(name + "_max", histogram.max());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the current values of all the metrics as text, a "name value" line each.
+     *
+     * @return - the text.
+     */
+    public static String text() {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, as bguspl.set:type=Metrics (once per JVM).
+     *
+     * @param logger - the logger to report errors to.
+     */
+    public static void registerMBean(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("bguspl.set:type=Metrics");
+            if (!server.isRegistered(name))
+                server.registerMBean(new MetricsMBean(), name);
+        } catch (JMException e) {
+            logger.severe("warning: cannot register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts serving the metrics as text over HTTP, at /metrics on the loopback interface.
+     *
+     * @param port   - the port to listen on.
+     * @param logger - the logger to report errors to.
+     * @return - the server (to stop once the game is over), or null if it could not be started.
+     */
+    public static HttpServer serve(int port, Logger logger) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = text().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            logger.severe("metrics are served at http://localhost:" + server.getAddress().getPort() + "/metrics");
+            return server;
+        } catch (IOException e) {
+            logger.severe("warning: cannot serve the metrics on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The metrics as read-only MBean attributes (Long), one per value of the snapshot.
+     */
+    private static class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = snapshot().get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            SortedMap<String, Long> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (values.containsKey(attribute))
+                    list.add(new Attribute(attribute, values.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("the metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            // built on every call, since metrics (e.g. of new players) may be registered at any time
+            MBeanAttributeInfo[] attributes = snapshot().keySet().stream()
+                    .map(name -> new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false))
+                    .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(Metrics.class.getName(), "Set game engine metrics", attributes, null, null, null);
+        }
+    }
+}
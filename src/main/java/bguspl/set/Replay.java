@@ -0,0 +1,308 @@
+package bguspl.set;
+
+import bguspl.set.ex.Claim;
+import bguspl.set.ex.ClaimBatch;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A headless entry point that replays recorded games (see GameJournalFile) at maximum speed, to reproduce reported
+ * bugs, regression-test changes to Table and Util, and profile them on real event streams. The recorded changes to the
+ * cards and the tokens are applied to a Table in the order they were recorded, with no clock, user interface or table
+ * delays, and the verdict on every claim is decided again against the replayed table, by the dealer's own rules
+ * (ClaimBatch). Every event is checked against the replayed state (e.g. the card removed from a slot is the card
+ * recorded, a token placed is accepted, a point is awarded for a legal set of cards on the table) and every mismatch is
+ * reported.
+ * Usage: Replay journal-file [set finder] [repeat]
+ * (the files that follow the given one in its journal are replayed too)
+ */
+public class Replay {
+
+    private static final Pattern JOURNAL_FILE = Pattern.compile("(.*)-(\\d{3})\\.journal");
+
+    /**
+     * The number of mismatches reported in detail.
+     */
+    private static final int MISMATCHES_SHOWN = 10;
+
+    private final Env env;
+    private Table table;
+
+    /**
+     * The claim each player is making (the cards recorded so far, until the verdict) and the points awarded.
+     */
+    private final int[][] claimSlots;
+    private final int[][] claimCards;
+    private final int[] claimSizes;
+    private final int[] scores;
+
+    /**
+     * The dealer's batch of claims, restarted on the first verdict after the cards changed (the dealer only changes
+     * them between batches).
+     */
+    private final ClaimBatch batch;
+    private boolean cardsChanged;
+
+    private long events = 0;
+    private long games = 0;
+    private long mismatches = 0;
+    private final List<String> shown = new ArrayList<>();
+
+    /**
+     * @param env - the game environment objects (the configuration must match the journal header).
+     */
+    public Replay(Env env) {
+        this.env = env;
+        claimSlots = new int[env.config.players][env.config.featureSize];
+        claimCards = new int[env.config.players][env.config.featureSize];
+        claimSizes = new int[env.config.players];
+        scores = new int[env.config.players];
+        batch = new ClaimBatch(env);
+        newGame();
+    }
+
+    /**
+     * Creates the configuration a journal was recorded with, from the header of one of its files.
+     *
+     * @param logger    - the logger.
+     * @param header    - the file contents (read from the start).
+     * @param setFinder - the set finder to replay with (null for the default).
+     * @return - the configuration.
+     * @throws IOException - if the file is not a journal.
+     */
+    public static Config config(Logger logger, ByteBuffer header, String setFinder) throws IOException {
+        if (header.remaining() < GameJournalFile.HEADER_SIZE || header.getInt(0) != GameJournalFile.MAGIC)
+            throw new IOException("not a game journal");
+        if (header.getInt(Integer.BYTES) != GameJournalFile.VERSION)
+            throw new IOException("unsupported journal version " + header.getInt(Integer.BYTES));
+
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", Integer.toString(header.getInt(3 * Integer.BYTES)));
+        properties.setProperty("FeatureSize", Integer.toString(header.getInt(4 * Integer.BYTES)));
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", Integer.toString(header.getInt(5 * Integer.BYTES)));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(header.getInt(6 * Integer.BYTES)));
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("LogLevel", "OFF");
+        if (setFinder != null)
+            properties.setProperty("SetFinder", setFinder);
+        return new Config(logger, properties);
+    }
+
+    private void newGame() {
+        table = new Table(env);
+        Arrays.fill(claimSizes, 0);
+        Arrays.fill(scores, 0);
+        cardsChanged = true;
+    }
+
+    /**
+     * Replays the records of a journal file.
+     *
+     * @param file - the file contents (read from the start).
+     */
+    public void replay(ByteBuffer file) {
+        for (int at = GameJournalFile.HEADER_SIZE; at + GameJournal.RECORD_SIZE <= file.limit(); at += GameJournal.RECORD_SIZE) {
+            int type = file.getInt(at + Long.BYTES);
+            int a = file.getInt(at + Long.BYTES + Integer.BYTES);
+            int b = file.getInt(at + Long.BYTES + 2 * Integer.BYTES);
+            int c = file.getInt(at + Long.BYTES + 3 * Integer.BYTES);
+            ++events;
+            try {
+                replay(type, a, b, c);
+            } catch (RuntimeException e) { // the table refused the change
+                mismatch(type, a, b, c, e.getMessage());
+            }
+        }
+    }
+
+    private void replay(int type, int a, int b, int c) {
+        switch (type) {
+            case GameJournal.GAME_START:
+                newGame();
+                ++games;
+                break;
+            case GameJournal.CARD_PLACED:
+                table.placeCard(b, a);
+                cardsChanged = true;
+                break;
+            case GameJournal.CARD_REMOVED:
+            case GameJournal.CARD_RETURNED:
+                if (table.cardAt(a) != b)
+                    mismatch(type, a, b, c, "the slot holds card " + table.cardAt(a));
+                else if (type == GameJournal.CARD_REMOVED)
+                    table.removeCard(a);
+                else
+                    table.removeCardAndReturnToDeck(a);
+                cardsChanged = true;
+                break;
+            case GameJournal.DECK_SHUFFLED: // the cards are recorded as they are dealt
+                break;
+            case GameJournal.TOKEN_PLACED:
+                if (table.cardAt(b) != c || table.hasToken(a, b))
+                    mismatch(type, a, b, c, "the slot holds card " + table.cardAt(b) + " and token " + table.hasToken(a, b));
+                else {
+                    table.placeToken(a, b);
+                    if (!table.hasToken(a, b))
+                        mismatch(type, a, b, c, "the token was refused");
+                }
+                break;
+            case GameJournal.TOKEN_REMOVED:
+                if (table.cardAt(b) != c || !table.removeToken(a, b))
+                    mismatch(type, a, b, c, "the slot holds card " + table.cardAt(b) + " and no token");
+                break;
+            case GameJournal.TOKENS_CLEARED:
+                for (int player = 0; player < env.config.players; ++player)
+                    for (int slot : table.getPlayerTokens(player))
+                        table.removeToken(player, slot);
+                break;
+            case GameJournal.CLAIM:
+                if (claimSizes[a] == env.config.featureSize)
+                    mismatch(type, a, b, c, "too many cards claimed");
+                else {
+                    claimSlots[a][claimSizes[a]] = b;
+                    claimCards[a][claimSizes[a]++] = c;
+                }
+                break;
+            case GameJournal.POINT:
+            case GameJournal.PENALTY:
+            case GameJournal.REJECTED:
+                int verdict = verdict(a);
+                if (verdict != type)
+                    mismatch(type, a, b, c, "the verdict should be " + verdict);
+                if (type == GameJournal.POINT)
+                    ++scores[a];
+                claimSizes[a] = 0;
+                break;
+            case GameJournal.GAME_END:
+                int topScore = Arrays.stream(scores).max().orElse(0);
+                long winners = Arrays.stream(scores).filter(score -> score == topScore).count();
+                if (topScore != a || winners != b)
+                    mismatch(type, a, b, c, "the top score is " + topScore + " (" + winners + " winners)");
+                break;
+            case GameJournal.FREEZE:
+            case GameJournal.TIMER_RESET: // the clock is not replayed
+                break;
+            default:
+                mismatch(type, a, b, c, "unknown event type");
+        }
+    }
+
+    /**
+     * Decides the verdict on the claim of a player, by the dealer's rules.
+     *
+     * @param player - the player.
+     * @return - POINT, PENALTY or REJECTED.
+     */
+    private int verdict(int player) {
+        if (cardsChanged) {
+            batch.start(table);
+            cardsChanged = false;
+        }
+        int size = claimSizes[player];
+        return batch.resolve(new Claim(player, Arrays.copyOf(claimSlots[player], size),
+                Arrays.copyOf(claimCards[player], size), 0));
+    }
+
+    private void mismatch(int type, int a, int b, int c, String reason) {
+        if (++mismatches <= MISMATCHES_SHOWN)
+            shown.add(String.format("event %d (type %d: %d, %d, %d): %s", events, type, a, b, c, reason));
+    }
+
+    public long events() {
+        return events;
+    }
+
+    public long games() {
+        return games;
+    }
+
+    public long mismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Returns the first mismatches found, described.
+     *
+     * @return - a description of each of the first MISMATCHES_SHOWN mismatches.
+     */
+    public List<String> shownMismatches() {
+        return shown;
+    }
+
+    /**
+     * Reads a journal file and the files that follow it in the journal.
+     *
+     * @param first - the first file to read.
+     * @return - the contents of the files, in order.
+     * @throws IOException - if a file cannot be read.
+     */
+    public static List<ByteBuffer> read(Path first) throws IOException {
+        List<ByteBuffer> files = new ArrayList<>();
+        files.add(ByteBuffer.wrap(Files.readAllBytes(first)));
+        Matcher matcher = JOURNAL_FILE.matcher(first.getFileName().toString());
+        if (matcher.matches()) {
+            Path directory = first.toAbsolutePath().getParent();
+            for (int sequence = Integer.parseInt(matcher.group(2)) + 1; ; ++sequence) {
+                Path next = GameJournalFile.file(directory, matcher.group(1), sequence);
+                if (!Files.exists(next))
+                    break;
+                files.add(ByteBuffer.wrap(Files.readAllBytes(next)));
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Replay journal-file [set finder] [repeat]");
+            return;
+        }
+        String setFinder = args.length > 1 && !args[1].isEmpty() ? args[1] : null;
+        int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        if (repeat < 1) {
+            System.out.println("the number of repeats must be at least 1");
+            return;
+        }
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        List<ByteBuffer> files = read(Paths.get(args[0]));
+        Config config = config(logger, files.get(0), setFinder);
+        Util util = Main.createUtil(logger, config);
+
+        long events = 0;
+        long start = System.nanoTime();
+        Replay replay = null;
+        for (int i = 0; i < repeat; ++i) {
+            replay = new Replay(new Env(logger, config, new UserInterfaceNoOp(), util));
+            for (ByteBuffer file : files)
+                replay.replay(file);
+            events += replay.events();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("journal: %d files, %d events, %d games (%d players, %d features of size %d, set finder %s)%n",
+                files.size(), replay.events(), replay.games(), config.players, config.featureCount, config.featureSize,
+                config.setFinder);
+        System.out.printf("replayed %d times in %.3f s%n", repeat, seconds);
+        System.out.printf("events/second: %.2f%n", events / seconds);
+        System.out.printf("mismatches: %d%n", replay.mismatches());
+        replay.shownMismatches().forEach(System.out::println);
+        if (replay.mismatches() > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,165 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An index of all the legal sets in the full deck, and of the sets each card belongs to. It only depends on the
+ * number and size of the features, so it is computed once per JVM for each (featureCount, featureSize) pair and shared
+ * by all the games using it (see forConfig). Building it goes through every (featureSize - 1)-combination of the deck,
+ * so layouts with more than MAX_COMBINATIONS of them get no index.
+ *
+ * @inv cardSets[cardSetsStart[c] .. cardSetsStart[c + 1] - 1] are the ids of the sets containing card c
+ */
+public class SetIndex {
+
+    private static final ConcurrentHashMap<Long, SetIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * The most combinations of cards an index is built from (a few seconds of work, and at most as many sets).
+     */
+    public static final long MAX_COMBINATIONS = 1L << 24;
+
+    /**
+     * The number of cards in each set (i.e. featureSize).
+     */
+    public final int setSize;
+
+    /**
+     * The total number of legal sets in the deck.
+     */
+    public final int setCount;
+
+    /**
+     * The cards of all the sets, setSize entries per set (sorted in each set).
+     */
+    private final int[] setCards;
+
+    /**
+     * The sets each card belongs to, grouped by card (compressed rows, see the class invariant).
+     */
+    private final int[] cardSetsStart;
+    private final int[] cardSets;
+
+    /**
+     * Returns the index for the configuration's features, computing it if no game has used it yet.
+     *
+     * @param config - the game configuration.
+     * @return - the shared index, or null if the deck has too many combinations of cards to index (see combinations).
+     */
+    public static SetIndex forConfig(Config config) {
+        if (combinations(config) > MAX_COMBINATIONS)
+            return null;
+        long key = ((long) config.featureCount << Integer.SIZE) | config.featureSize;
+        return indexes.computeIfAbsent(key, k -> new SetIndex(config));
+    }
+
+    /**
+     * Returns the number of combinations of cards building the index goes through: C(deckSize, featureSize - 1) (or
+     * C(deckSize, featureSize) where sets are not found by completion, see FeatureTable.completesSets, but by testing
+     * every combination).
+     *
+     * @param config - the game configuration.
+     * @return - the number of combinations (approximate above 2^53).
+     */
+    public static double combinations(Config config) {
+        int k = FeatureTable.completesSets(config.featureSize) ? config.featureSize - 1 : config.featureSize;
+        double combinations = 1;
+        for (int i = 0; i < k && combinations <= MAX_COMBINATIONS; ++i)
+            combinations = combinations * (config.deckSize - i) / (i + 1);
+        return combinations;
+    }
+
+    private SetIndex(Config config) {
+        setSize = config.featureSize;
+        int[] sets = FeatureTable.completesSets(config.featureSize) ? completeAllSets(config) : findAllSets(config);
+        setCards = sets;
+        setCount = sets.length / setSize;
+
+        cardSetsStart = new int[config.deckSize + 1];
+        for (int card : setCards)
+            ++cardSetsStart[card + 1];
+        for (int card = 0; card < config.deckSize; ++card)
+            cardSetsStart[card + 1] += cardSetsStart[card];
+        cardSets = new int[setCards.length];
+        int[] next = Arrays.copyOf(cardSetsStart, config.deckSize);
+        for (int set = 0; set < setCount; ++set)
+            for (int i = 0; i < setSize; ++i)
+                cardSets[next[setCards[set * setSize + i]]++] = set;
+    }
+
+    /**
+     * Finds all the sets by completing every (featureSize - 1)-combination of the deck.
+     */
+    private static int[] completeAllSets(Config config) {
+        int r = config.featureSize;
+        int n = config.deckSize;
+        int[] sets = new int[r * 64];
+        int size = 0;
+        int[] combination = new int[r - 1];
+        for (int i = 0; i < r - 1; ++i)
+            combination[i] = i;
+
+        // the combination is the card ids themselves, and the completing card must be a greater id
+        while (combination[r - 2] < n - 1) {
+            int card = config.featureTable.completeSet(combination, r - 1);
+            if (card > combination[r - 2]) {
+                if (size + r > sets.length)
+                    sets = Arrays.copyOf(sets, sets.length * 2);
+                System.arraycopy(combination, 0, sets, size, r - 1);
+                sets[size + r - 1] = card;
+                size += r;
+            }
+
+            // generate next (r - 1)-combination in lexicographic order, leaving room for the completing card
+            int t = r - 2;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return Arrays.copyOf(sets, size);
+    }
+
+    /**
+     * Finds all the sets by testing every combination of the deck (for featureSize < 3).
+     */
+    private static int[] findAllSets(Config config) {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        return new UtilImpl(config).findSets(deck, Integer.MAX_VALUE).stream().flatMapToInt(Arrays::stream).toArray();
+    }
+
+    /**
+     * Returns a card of a set.
+     *
+     * @param set   - the set id (between 0 and setCount - 1).
+     * @param index - the index of the card in the set (between 0 and setSize - 1).
+     * @return - the card id.
+     */
+    public int card(int set, int index) {
+        return setCards[set * setSize + index];
+    }
+
+    /**
+     * Returns the number of sets a card belongs to.
+     *
+     * @param card - the card id.
+     * @return - the number of sets containing the card.
+     */
+    public int setsOfCardCount(int card) {
+        return cardSetsStart[card + 1] - cardSetsStart[card];
+    }
+
+    /**
+     * Returns one of the sets a card belongs to.
+     *
+     * @param card  - the card id.
+     * @param index - between 0 and setsOfCardCount(card) - 1.
+     * @return - the set id.
+     */
+    public int setOfCard(int card, int index) {
+        return cardSets[cardSetsStart[card] + index];
+    }
+}
@@ -0,0 +1,74 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A headless entry point that runs full games at maximum speed: the real Dealer, Player and Table classes with
+ * computer players only (reacting instantly), no user interface, no table delays, no freezes and no turn timer (the
+ * dealer keeps a set on the table instead). Used to load-test the concurrency code itself rather than the animations.
+ * If a journal directory is configured, all the games are recorded in a single journal (one game after the other).
+ * Usage: Simulation [games] [config file]
+ */
+public class Simulation {
+
+    /**
+     * The configuration values that are always overridden in a simulation.
+     */
+    static void turbo(Properties properties) {
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2"))
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(Math.max(players, 1)));
+        properties.setProperty("Hints", "False");
+        properties.setProperty("ComputerReactionMinSeconds", "0");
+        properties.setProperty("ComputerReactionMaxSeconds", "0");
+        properties.setProperty("TurnTimeoutSeconds", "-1");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("LogLevel", "OFF");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        String configFilename = args.length > 1 ? args[1] : "config.properties";
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(configFilename, logger);
+        turbo(properties);
+        Config config = new Config(logger, properties);
+        Util util = Main.createUtil(logger, config);
+        GameJournal journal = Main.createJournal(logger, config, "simulation-" + System.currentTimeMillis());
+
+        long claims = 0;
+        long minNanos = Long.MAX_VALUE, maxNanos = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; ++game) {
+            Game instance = new Game(new Env(logger, config, new UserInterfaceNoOp(), util, journal));
+
+            long gameStart = System.nanoTime();
+            ThreadLogger dealerThread = new ThreadLogger(instance.dealer, "dealer", logger);
+            dealerThread.startWithLog();
+            dealerThread.joinWithLog();
+            long gameNanos = System.nanoTime() - gameStart;
+
+            claims += instance.dealer.claims();
+            minNanos = Math.min(minNanos, gameNanos);
+            maxNanos = Math.max(maxNanos, gameNanos);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        journal.close();
+
+        System.out.printf("games: %d (%d players, %d features of size %d, set finder %s)%n",
+                games, config.players, config.featureCount, config.featureSize, config.setFinder);
+        System.out.printf("total duration: %.3f s%n", seconds);
+        System.out.printf("games/second: %.2f%n", games / seconds);
+        System.out.printf("claims: %d, claims/second: %.2f%n", claims, claims / seconds);
+        if (games > 0)
+            System.out.printf("game duration: avg %.3f ms, min %.3f ms, max %.3f ms%n",
+                    seconds * 1e3 / games, minNanos / 1e6, maxNanos / 1e6);
+    }
+}
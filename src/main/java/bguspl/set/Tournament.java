@@ -0,0 +1,147 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Runs many independent headless games concurrently in one JVM, on a pool sized to the machine, and aggregates the
+ * results: wins per player, the score distribution and game length statistics, and the games that failed if any. The
+ * games use the same turbo settings as Simulation, and the results are collected with contention-free counters so the
+ * games never wait for each other.
+ * Usage: Tournament [games] [parallel games (0 for the number of cores)] [config file]
+ */
+public class Tournament {
+
+    /**
+     * The results of all the games (updated concurrently by the games as they end).
+     */
+    private static class Results {
+
+        final LongAdder games = new LongAdder();
+        long failed = 0; // the games that threw, counted once they are all done
+        Throwable firstFailure;
+        final LongAdder claims = new LongAdder();
+        final LongAdder[] wins;
+        final LongAdder[] ties;
+        final LongAdder[] points;
+        final LongAdder[] scores; // the number of times a player ended a game with each score
+        final LongAdder gameMicros = new LongAdder();
+        final LongAdder gameMicrosSquared = new LongAdder();
+        final LongAccumulator minGameMicros = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator maxGameMicros = new LongAccumulator(Math::max, 0);
+
+        Results(Config config) {
+            wins = newAdders(config.players);
+            ties = newAdders(config.players);
+            points = newAdders(config.players);
+            scores = newAdders(config.deckSize / Math.max(config.featureSize, 1) + 1);
+        }
+
+        private static LongAdder[] newAdders(int size) {
+            LongAdder[] adders = new LongAdder[size];
+            for (int i = 0; i < size; ++i)
+                adders[i] = new LongAdder();
+            return adders;
+        }
+
+        void record(Game game, long nanos) {
+            games.increment();
+            claims.add(game.dealer.claims());
+
+            int[] winners = game.winners();
+            for (int winner : winners)
+                (winners.length == 1 ? wins : ties)[winner].increment();
+            for (int i = 0; i < game.players.length; ++i) {
+                int score = game.players[i].score();
+                points[i].add(score);
+                scores[Math.min(score, scores.length - 1)].increment();
+            }
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            gameMicros.add(micros);
+            gameMicrosSquared.add(micros * micros);
+            minGameMicros.accumulate(micros);
+            maxGameMicros.accumulate(micros);
+        }
+
+        void failed(Throwable cause) {
+            if (failed++ == 0)
+                firstFailure = cause;
+        }
+
+        void print(Config config, double seconds) {
+            long n = games.sum();
+            System.out.printf("games: %d (%d players, %d features of size %d, set finder %s)%n",
+                    n, config.players, config.featureCount, config.featureSize, config.setFinder);
+            System.out.printf("total duration: %.3f s, games/second: %.2f, claims/second: %.2f%n",
+                    seconds, n / seconds, claims.sum() / seconds);
+            if (failed > 0) {
+                System.out.printf("failed games: %d, the first with: %s%n", failed, firstFailure);
+                firstFailure.printStackTrace(System.out);
+            }
+            if (n == 0)
+                return;
+
+            double mean = gameMicros.sum() / (double) n;
+            double deviation = Math.sqrt(Math.max(gameMicrosSquared.sum() / (double) n - mean * mean, 0));
+            System.out.printf("game duration: avg %.3f ms, stddev %.3f ms, min %.3f ms, max %.3f ms%n",
+                    mean / 1e3, deviation / 1e3, minGameMicros.get() / 1e3, maxGameMicros.get() / 1e3);
+
+            for (int i = 0; i < config.players; ++i)
+                System.out.printf("%s: %d wins, %d ties, avg score %.2f%n",
+                        config.playerNames[i], wins[i].sum(), ties[i].sum(), points[i].sum() / (double) n);
+
+            StringBuilder sb = new StringBuilder("score distribution:");
+            for (int score = 0; score < scores.length; ++score)
+                if (scores[score].sum() > 0)
+                    sb.append(' ').append(score).append('=').append(scores[score].sum());
+            System.out.println(sb);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        String configFilename = args.length > 2 ? args[2] : "config.properties";
+        if (parallelism <= 0)
+            parallelism = Runtime.getRuntime().availableProcessors();
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(configFilename, logger);
+        Simulation.turbo(properties);
+        Config config = new Config(logger, properties);
+        Util util = Main.createUtil(logger, config);
+        Results results = new Results(config);
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> played = new ArrayList<>(games);
+        long start = System.nanoTime();
+        for (int i = 0; i < games; ++i)
+            played.add(pool.submit(() -> {
+                Game game = new Game(new Env(logger, config, new UserInterfaceNoOp(), util));
+                long gameStart = System.nanoTime();
+                game.dealer.run(); // the dealer runs on the pool thread, its players on their own threads
+                results.record(game, System.nanoTime() - gameStart);
+            }));
+        pool.shutdown();
+        while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+            logger.info("tournament still running: " + results.games.sum() + " games done");
+        for (Future<?> game : played)
+            try {
+                game.get();
+            } catch (ExecutionException e) {
+                results.failed(e.getCause());
+            }
+        results.print(config, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,140 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A user interface wrapper that animates the card changes: the card placements and removals are queued and replayed
+ * on the wrapped user interface by a background thread, which waits tableDelayMillis before showing each of them (or
+ * each batch of them). The game state itself changes immediately, so the callers (the table, the dealer and the
+ * players) are never blocked by the cosmetic delay. The cards are shown in their original order; all the other
+ * updates (tokens, timer, freezes, scores, winners) are passed straight through, so they never wait behind the cards.
+ * The wrapped user interface must be safe to call from any thread (see UserInterfaceDispatcher).
+ */
+public class UserInterfaceAnimator implements UserInterface {
+
+    private final UserInterface ui;
+    private final long delayMillis;
+    private final BlockingQueue<Runnable> events = new LinkedBlockingQueue<>();
+    private final Thread animator;
+    private volatile boolean disposed = false;
+
+    /**
+     * @param ui          - the user interface to animate.
+     * @param delayMillis - the number of milliseconds to wait before showing each card placement or removal.
+     */
+    public UserInterfaceAnimator(UserInterface ui, long delayMillis) {
+        this.ui = ui;
+        this.delayMillis = delayMillis;
+        animator = new Thread(this::run, "ui-animator");
+        animator.setDaemon(true);
+        animator.start();
+    }
+
+    private void run() {
+        try {
+            while (!disposed || !events.isEmpty())
+                events.take().run();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void delay() {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        events.add(() -> {
+            delay();
+            ui.placeCard(card, slot);
+        });
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        events.add(() -> {
+            delay();
+            ui.removeCard(slot);
+        });
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        int[] placedCards = cards.clone();
+        int[] placedSlots = slots.clone();
+        events.add(() -> {
+            delay();
+            ui.placeCards(placedCards, placedSlots);
+        });
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        int[] removedSlots = slots.clone();
+        events.add(() -> {
+            delay();
+            ui.removeCards(removedSlots);
+        });
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        ui.announceWinner(players);
+    }
+
+    /**
+     * Disposes of the wrapped user interface once all the pending card changes were shown.
+     */
+    @Override
+    public void dispose() {
+        events.add(() -> {
+            disposed = true;
+            ui.dispose();
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package bguspl.set;
+
+import javax.swing.Timer;
+import java.awt.EventQueue;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A user interface wrapper that coalesces the display updates: every call only records the latest value of the display
+ * element it changes (a slot's card, a slot's tokens, a player's score or freeze time, the timer, the winners), and
+ * the elements changed since the last frame are applied to the wrapped user interface on the event dispatch thread,
+ * in one batch, at most maxFps times a second. Superseded values are never shown, so the cost of the display is bounded
+ * by the frame rate rather than by how fast the game runs, and the game threads never wait for the display.
+ */
+public class UserInterfaceDispatcher implements UserInterface {
+
+    private static final int NO_TIMER = 0;
+    private static final int COUNTDOWN = 1;
+    private static final int ELAPSED = 2;
+
+    private final UserInterface ui;
+    private final long frameNanos;
+    private final Timer timer;
+
+    /*
+     * The latest value of every display element, and which of them changed since the last frame (guarded by this).
+     */
+    private final int[] cards;          // by slot, -1 for none
+    private final BitSet cardsChanged = new BitSet();
+    private final long[] tokens;        // by slot, tokenWords longs each: bit p is set iff player p has a token there
+    private final int tokenWords;
+    private final BitSet tokensChanged = new BitSet();
+    private final int[] scores;
+    private final BitSet scoresChanged = new BitSet();
+    private final long[] freezes;
+    private final BitSet freezesChanged = new BitSet();
+    private int timerMode = NO_TIMER;
+    private long timerMillis;
+    private boolean timerWarn;
+    private int[] winners;
+
+    private boolean scheduled = false;
+    private boolean disposed = false;
+    private long lastFrame;
+
+    /*
+     * The values of a frame, copied out of the state above so the wrapped user interface is called without the lock
+     * (only used on the event dispatch thread).
+     */
+    private final int[] frameCards;
+    private final long[] frameTokens;
+    private final int[] frameScores;
+    private final long[] frameFreezes;
+    private final BitSet frameCardsChanged = new BitSet();
+    private final BitSet frameTokensChanged = new BitSet();
+    private final BitSet frameScoresChanged = new BitSet();
+    private final BitSet frameFreezesChanged = new BitSet();
+
+    /**
+     * @param ui     - the user interface to update.
+     * @param config - the game configuration (the table size, the number of players, and the maximum frame rate).
+     */
+    public UserInterfaceDispatcher(UserInterface ui, Config config) {
+        this.ui = ui;
+        frameNanos = config.maxFps > 0 ? 1_000_000_000L / config.maxFps : 0;
+        timer = new Timer(0, event -> frame());
+        timer.setRepeats(false);
+
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokenWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+        tokens = new long[config.tableSize * tokenWords];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        frameCards = new int[config.tableSize];
+        frameTokens = new long[tokens.length];
+        frameScores = new int[config.players];
+        frameFreezes = new long[config.players];
+        lastFrame = System.nanoTime() - frameNanos;
+    }
+
+    /**
+     * Schedules the next frame, unless one is already scheduled: right away if the last one was a frame interval ago,
+     * otherwise once it is (guarded by this).
+     */
+    private void changed() {
+        if (scheduled || disposed)
+            return;
+        scheduled = true;
+        long delayMillis = (lastFrame + frameNanos - System.nanoTime()) / 1_000_000L;
+        if (delayMillis <= 0)
+            EventQueue.invokeLater(this::frame);
+        else {
+            timer.setInitialDelay((int) delayMillis);
+            timer.restart();
+        }
+    }
+
+    /**
+     * Applies the display elements changed since the last frame (on the event dispatch thread).
+     */
+    private void frame() {
+        int frameTimerMode;
+        long frameTimerMillis;
+        boolean frameTimerWarn;
+        int[] frameWinners;
+        synchronized (this) {
+            scheduled = false;
+            lastFrame = System.nanoTime();
+            copy(cardsChanged, frameCardsChanged);
+            for (int slot = cardsChanged.nextSetBit(0); slot >= 0; slot = cardsChanged.nextSetBit(slot + 1))
+                frameCards[slot] = cards[slot];
+            copy(tokensChanged, frameTokensChanged);
+            for (int slot = tokensChanged.nextSetBit(0); slot >= 0; slot = tokensChanged.nextSetBit(slot + 1))
+                System.arraycopy(tokens, slot * tokenWords, frameTokens, slot * tokenWords, tokenWords);
+            copy(scoresChanged, frameScoresChanged);
+            System.arraycopy(scores, 0, frameScores, 0, scores.length);
+            copy(freezesChanged, frameFreezesChanged);
+            System.arraycopy(freezes, 0, frameFreezes, 0, freezes.length);
+            frameTimerMode = timerMode;
+            frameTimerMillis = timerMillis;
+            frameTimerWarn = timerWarn;
+            frameWinners = winners;
+            cardsChanged.clear();
+            tokensChanged.clear();
+            scoresChanged.clear();
+            freezesChanged.clear();
+            timerMode = NO_TIMER;
+            winners = null;
+        }
+
+        showCards();
+        for (int slot = frameTokensChanged.nextSetBit(0); slot >= 0; slot = frameTokensChanged.nextSetBit(slot + 1)) {
+            ui.removeTokens(slot);
+            for (int i = 0; i < tokenWords; i++)
+                for (long mask = frameTokens[slot * tokenWords + i]; mask != 0; mask &= mask - 1)
+                    ui.placeToken(i * Long.SIZE + Long.numberOfTrailingZeros(mask), slot);
+        }
+        for (int player = frameScoresChanged.nextSetBit(0); player >= 0; player = frameScoresChanged.nextSetBit(player + 1))
+            ui.setScore(player, frameScores[player]);
+        for (int player = frameFreezesChanged.nextSetBit(0); player >= 0; player = frameFreezesChanged.nextSetBit(player + 1))
+            ui.setFreeze(player, frameFreezes[player]);
+        if (frameTimerMode == COUNTDOWN)
+            ui.setCountdown(frameTimerMillis, frameTimerWarn);
+        else if (frameTimerMode == ELAPSED)
+            ui.setElapsed(frameTimerMillis);
+        if (frameWinners != null)
+            ui.announceWinner(frameWinners);
+    }
+
+    private static void copy(BitSet from, BitSet to) {
+        to.clear();
+        to.or(from);
+    }
+
+    /**
+     * Shows the cards changed in this frame, as one placement and one removal.
+     */
+    private void showCards() {
+        if (frameCardsChanged.isEmpty())
+            return;
+        int placed = 0;
+        for (int slot = frameCardsChanged.nextSetBit(0); slot >= 0; slot = frameCardsChanged.nextSetBit(slot + 1))
+            if (frameCards[slot] >= 0)
+                placed++;
+        int[] placedCards = new int[placed];
+        int[] placedSlots = new int[placed];
+        int[] removedSlots = new int[frameCardsChanged.cardinality() - placed];
+        int p = 0;
+        int r = 0;
+        for (int slot = frameCardsChanged.nextSetBit(0); slot >= 0; slot = frameCardsChanged.nextSetBit(slot + 1))
+            if (frameCards[slot] >= 0) {
+                placedCards[p] = frameCards[slot];
+                placedSlots[p++] = slot;
+            } else
+                removedSlots[r++] = slot;
+        if (removedSlots.length > 0)
+            ui.removeCards(removedSlots);
+        if (placedCards.length > 0)
+            ui.placeCards(placedCards, placedSlots);
+    }
+
+    private void setCard(int slot, int card) {
+        cards[slot] = card;
+        cardsChanged.set(slot);
+    }
+
+    private void setToken(int player, int slot, boolean present) {
+        int word = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << (player % Long.SIZE);
+        tokens[word] = present ? tokens[word] | bit : tokens[word] & ~bit;
+        tokensChanged.set(slot);
+    }
+
+    private void clearTokens(int slot) {
+        Arrays.fill(tokens, slot * tokenWords, (slot + 1) * tokenWords, 0);
+        tokensChanged.set(slot);
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        setCard(slot, card);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        setCard(slot, -1);
+        changed();
+    }
+
+    @Override
+    public synchronized void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; ++i)
+            setCard(slots[i], cards[i]);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeCards(int[] slots) {
+        for (int slot : slots)
+            setCard(slot, -1);
+        changed();
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        setToken(player, slot, true);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (int slot = 0; slot < cards.length; slot++)
+            clearTokens(slot);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        clearTokens(slot);
+        changed();
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        setToken(player, slot, false);
+        changed();
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        timerMode = COUNTDOWN;
+        timerMillis = millies;
+        timerWarn = warn;
+        changed();
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        timerMode = ELAPSED;
+        timerMillis = millies;
+        changed();
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+        freezesChanged.set(player);
+        changed();
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        scoresChanged.set(player);
+        changed();
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        changed();
+    }
+
+    /**
+     * Disposes of the wrapped user interface on the event dispatch thread, once the pending changes were shown.
+     */
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            disposed = true;
+        }
+        timer.stop();
+        EventQueue.invokeLater(() -> {
+            frame();
+            ui.dispose();
+        });
+    }
+}
@@ -4,10 +4,10 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -24,15 +24,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final WinnerPanel winnerPanel;
     private final Config config;
 
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
-
-    public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, Main main) {
 
         this.config = config;
         timerPanel = new TimerPanel();
-        gamePanel = new GamePanel();
+        gamePanel = new GamePanel(logger);
         playersPanel = new PlayersPanel();
         winnerPanel = new WinnerPanel();
 
@@ -64,7 +60,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         addKeyListener(new InputManager(logger, config, players));
-        addWindowListener(new WindowManager());
+        addWindowListener(new WindowManager(main));
 
         EventQueue.invokeLater(() -> setVisible(true));
     }
@@ -100,115 +96,189 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
-    private class GamePanel extends JLayeredPane {
+    private class GamePanel extends JPanel {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
+        private static final String TOKEN_SEPARATOR = ", ";
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The card images, loaded in the background.
+         */
+        private final CardImages images;
+
+        /**
+         * The card shown in each slot (-1 for none; used on the event dispatch thread only).
+         */
+        private final int[] cells;
+
+        /**
+         * The players with a token on each slot: a bitmask of tokenWords longs per slot (bit p of a slot's mask is set
+         * iff player p has a token on it).
+         */
+        private final AtomicLongArray tokens;
+        private final int tokenWords;
 
-        private GamePanel() {
+        private final Font tokenFont = UIManager.getFont("Label.font");
+        private final Color tokenColor = UIManager.getColor("Label.foreground");
+        private int[] nameWidths; // in tokenFont, measured on the first paint
+
+        private GamePanel(Logger logger) {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
-
-            grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
-            for (int row = 0; row < config.rows; row++) {
-                for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
-                    // init the JLabel selection overlay
-                    tokenText[row][column] = new JLabel("");
-                    tokenText[row][column].setVerticalAlignment(JLabel.TOP);
-                    tokenText[row][column].setHorizontalAlignment(JLabel.CENTER);
-                    tokenText[row][column].setOpaque(false);
-                    tokenText[row][column].setBorder(BorderFactory.createLineBorder(Color.black));
-                    tokenText[row][column].setBounds((column * config.cellWidth), (row * config.cellHeight), config.cellWidth, config.cellHeight);
-                    add(tokenText[row][column]);
-                }
-            }
+            assert config.featureSize < 10; // otherwise there will be naming conflicts in the card image names
+
+            // init the cards on the table grid as empty cards, with no tokens
+            cells = new int[config.tableSize];
+            Arrays.fill(cells, -1);
+            tokenWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+            tokens = new AtomicLongArray(config.tableSize * tokenWords);
+
+            // start loading the card images, and repaint the slots showing each one once it is loaded (the images are
+            // loaded on a background thread, and cells is only used on the event dispatch thread)
+            images = new CardImages(logger, config, card -> EventQueue.invokeLater(() -> {
+                for (int slot = 0; slot < cells.length; slot++)
+                    if (cells[slot] == card)
+                        repaintCell(slot);
+            }));
+        }
+
+        /**
+         * Repaints the cell of a slot only.
+         */
+        private void repaintCell(int slot) {
+            repaint((slot % config.columns) * config.cellWidth, (slot / config.columns) * config.cellHeight,
+                    config.cellWidth, config.cellHeight);
         }
 
         private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            images.request(card);
+            cells[slot] = card;
+            repaintCell(slot);
         }
 
         private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            cells[slot] = -1;
+            repaintCell(slot);
+        }
+
+        private void placeCards(int[] cards, int[] slots) {
+            for (int card : cards)
+                images.request(card);
+            for (int i = 0; i < cards.length; ++i) {
+                cells[slots[i]] = cards[i];
+                repaintCell(slots[i]);
+            }
+        }
+
+        private void removeCards(int[] slots) {
+            for (int slot : slots) {
+                cells[slot] = -1;
+                repaintCell(slot);
+            }
+        }
+
+        private void setToken(int player, int slot, boolean present) {
+            int word = slot * tokenWords + player / Long.SIZE;
+            long bit = 1L << (player % Long.SIZE);
+            long mask;
+            do {
+                mask = tokens.get(word);
+            } while (!tokens.compareAndSet(word, mask, present ? mask | bit : mask & ~bit));
+            repaintCell(slot);
         }
 
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            setToken(player, slot, true);
         }
 
         private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
+            for (int i = 0; i < tokens.length(); i++)
+                tokens.set(i, 0);
+            repaint();
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            for (int i = 0; i < tokenWords; i++)
+                tokens.set(slot * tokenWords + i, 0);
+            repaintCell(slot);
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
-            }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            setToken(player, slot, false);
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            super.paintComponent(g);
+            Object textHints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (textHints instanceof Map)
+                ((Graphics2D) g).addRenderingHints((Map<?, ?>) textHints);
+
+            // paint only the cells in the dirty region
+            Rectangle clip = g.getClipBounds();
+            if (clip == null)
+                clip = new Rectangle(getSize());
+            int firstRow = Math.max(clip.y / config.cellHeight, 0);
+            int lastRow = Math.min((clip.y + clip.height - 1) / config.cellHeight, config.rows - 1);
+            int firstColumn = Math.max(clip.x / config.cellWidth, 0);
+            int lastColumn = Math.min((clip.x + clip.width - 1) / config.cellWidth, config.columns - 1);
+
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int slot = row * config.columns + column;
+                    int x = column * config.cellWidth;
+                    int y = row * config.cellHeight;
+                    // a card whose image is not loaded yet is shown as an empty slot until it is
+                    Image image = cells[slot] < 0 ? null : images.get(cells[slot]);
+                    g.drawImage(image != null ? image : images.empty(), x, y, null);
+                    g.setColor(Color.BLACK);
+                    g.drawRect(x, y, config.cellWidth - 1, config.cellHeight - 1);
+                    paintTokens(g, slot, x, y);
+                }
+        }
+
+        /**
+         * Draws the names of the players with a token on a slot, centered at the top of its cell.
+         */
+        private void paintTokens(Graphics g, int slot, int x, int y) {
+            g.setFont(tokenFont);
+            FontMetrics metrics = g.getFontMetrics();
+            if (nameWidths == null) {
+                nameWidths = new int[config.players];
+                for (int player = 0; player < config.players; player++)
+                    nameWidths[player] = metrics.stringWidth(config.playerNames[player]);
+            }
+
+            int width = 0;
+            int count = 0;
+            for (int i = 0; i < tokenWords; i++)
+                for (long mask = tokens.get(slot * tokenWords + i); mask != 0; mask &= mask - 1) {
+                    width += nameWidths[i * Long.SIZE + Long.numberOfTrailingZeros(mask)];
+                    count++;
+                }
+            if (count == 0)
+                return;
+            int separatorWidth = metrics.stringWidth(TOKEN_SEPARATOR);
+            width += (count - 1) * separatorWidth;
+
+            // inside the border of the cell, and clipped to it
+            Graphics cell = g.create(x + 1, y + 1, config.cellWidth - 2, config.cellHeight - 2);
+            cell.setColor(tokenColor);
+            int left = (config.cellWidth - 2 - width) / 2;
+            int baseline = metrics.getAscent();
+            boolean first = true;
+            for (int i = 0; i < tokenWords; i++)
+                for (long mask = tokens.get(slot * tokenWords + i); mask != 0; mask &= mask - 1) {
+                    int player = i * Long.SIZE + Long.numberOfTrailingZeros(mask);
+                    if (!first) {
+                        cell.drawString(TOKEN_SEPARATOR, left, baseline);
+                        left += separatorWidth;
+                    }
+                    cell.drawString(config.playerNames[player], left, baseline);
+                    left += nameWidths[player];
+                    first = false;
+                }
+            cell.dispose();
         }
     }
 
@@ -284,6 +354,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
@@ -333,6 +413,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void dispose() {
+        gamePanel.images.shutdown();
         super.dispose();
     }
 }
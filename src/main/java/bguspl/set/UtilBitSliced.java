@@ -0,0 +1,54 @@
+package bguspl.set;
+
+/**
+ * An implementation of the Util interface that tests sets on bit-sliced cards: every card is encoded as a single long
+ * with a one-hot group of featureSize bits per feature, so testing any number of cards takes a word-wide AND and OR
+ * over their codes and two popcounts, with no branch per feature.
+ * A feature is sameSame in all n cards iff its group is set in the AND of the codes (one bit), and it is butDifferent
+ * iff its group has n bits set in the OR. So with s sameSame features, the cards form a legal set iff the OR has
+ * s + n * (featureCount - s) bits set, i.e. every other feature takes n different values.
+ * Sets are found by completion, as in UtilPairCompletion. With featureCount * featureSize > 64 the cards do not fit in
+ * a long, and the sets are tested feature by feature instead.
+ *
+ * @inv codes[card] has bit (i * featureSize + the i-th feature of card) set for every feature i, and no other bit.
+ */
+public class UtilBitSliced extends UtilPairCompletion {
+
+    private final Config config;
+
+    /**
+     * The code of every card in the deck (null if the cards do not fit in a long).
+     */
+    private final long[] codes;
+
+    public UtilBitSliced(Config config) {
+        super(config);
+        this.config = config;
+        codes = config.featureCount * config.featureSize <= Long.SIZE ? encode(config.featureTable) : null;
+    }
+
+    private static long[] encode(FeatureTable table) {
+        long[] codes = new long[table.deckSize];
+        for (int card = 0; card < table.deckSize; ++card)
+            for (int i = 0; i < table.featureCount; ++i)
+                codes[card] |= 1L << (i * table.featureSize + table.feature(card, i));
+        return codes;
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        int n = cards.length;
+        if (codes == null || n < 2) // a single card (or none) is sameSame and butDifferent at once
+            return super.testSet(cards);
+
+        long and = -1L;
+        long or = 0L;
+        for (int card : cards) {
+            long code = codes[card];
+            and &= code;
+            or |= code;
+        }
+        int sameSame = Long.bitCount(and);
+        return Long.bitCount(or) == sameSame + n * (config.featureCount - sameSame);
+    }
+}
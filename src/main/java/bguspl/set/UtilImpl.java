@@ -4,7 +4,6 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
 
 /**
  * The implementation of the UserInterface interface.
@@ -17,47 +16,44 @@ public class UtilImpl implements Util {
         this.config = config;
     }
 
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
-        }
-    }
-
     @Override
     public int[] cardToFeatures(int card) {
         int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
+        config.featureTable.copyFeatures(card, features);
         return features;
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        for (int i = 0; i < cards.length; ++i)
+            config.featureTable.copyFeatures(cards[i], features[i]);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        FeatureTable table = config.featureTable;
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            int first = cards.length > 0 ? table.feature(cards[0], i) : 0;
+            for (int j = 1; j < cards.length; ++j)
+                if (first != table.feature(cards[j], i)) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length && butDifferent; ++j) {
+                int feature = table.feature(cards[j - 1], i);
+                for (int k = j; k < cards.length; ++k)
+                    if (feature == table.feature(cards[k], i)) {
                         butDifferent = false;
                         break;
                     }
+            }
 
             if (sameSame == butDifferent) return false;
         }
@@ -69,15 +65,22 @@ public class UtilImpl implements Util {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
+        int[] cards = new int[n];
+        for (int i = 0; i < n; ++i)
+            cards[i] = deck.get(i);
         int[] combination = new int[r];
+        int[] candidate = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                candidate[i] = cards[combination[i]];
+            if (testSet(candidate)) {
+                int[] set = candidate.clone();
+                Arrays.sort(set);
+                sets.add(set);
                 if (sets.size() >= count) return sets;
             }
 
@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An implementation of the Util interface that finds sets by completion instead of testing every combination.
+ * Any featureSize - 1 cards fully determine the only card that can complete them to a legal set, so it is enough to
+ * walk the (featureSize - 1)-combinations of the deck and look the completing card up in a card-presence index.
+ * For the default featureSize of 3 this makes findSets O(n^2) instead of O(n^3).
+ * Note: with featureSize < 3 the completing card is not unique, and FeatureTable only completes sets of up to
+ * MAX_COMPLETION_SIZE values per feature, so the combinations search is used for those instead.
+ */
+public class UtilPairCompletion extends UtilImpl {
+
+    private final Config config;
+
+    public UtilPairCompletion(Config config) {
+        super(config);
+        this.config = config;
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        LinkedList<int[]> sets = new LinkedList<>();
+        int n = deck.size();
+        int r = config.featureSize;
+        if (!FeatureTable.completesSets(r))
+            return super.findSets(deck, count);
+        if (n < r)
+            return sets;
+
+        // card-presence index: the position of each card in the deck (-1 if it is not in it)
+        int[] cards = new int[n];
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < n; ++i) {
+            cards[i] = deck.get(i);
+            position[cards[i]] = i;
+        }
+
+        int[] combination = new int[r - 1];
+        int[] candidate = new int[r];
+        for (int i = 0; i < r - 1; ++i)
+            combination[i] = i;
+
+        // the completing card must come after the combination in the deck, so every set is found exactly once and in
+        // the same (lexicographic) order as testing all the r-combinations would find it.
+        while (combination[r - 2] < n - 1) {
+            for (int i = 0; i < r - 1; ++i)
+                candidate[i] = cards[combination[i]];
+            int card = config.featureTable.completeSet(candidate, r - 1);
+            if (card >= 0 && position[card] > combination[r - 2]) {
+                candidate[r - 1] = card;
+                int[] set = candidate.clone();
+                Arrays.sort(set);
+                sets.add(set);
+                if (sets.size() >= count) return sets;
+            }
+
+            // generate next (r - 1)-combination in lexicographic order, leaving room for the completing card
+            int t = r - 2;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set.ex;
+
+/**
+ * A set claimed by a player: the slots the player had tokens on and the cards that were in them when the claim was
+ * made. The dealer checks claims against these cards, so a claim whose cards changed before it was checked is
+ * rejected instead of being judged on cards the player never saw.
+ */
+public class Claim {
+
+    public final int player;
+    public final int[] slots;
+    public final int[] cards;
+
+    /**
+     * The time the claim was made (System.nanoTime).
+     */
+    public final long nanoTime;
+
+    public Claim(int player, int[] slots, int[] cards, long nanoTime) {
+        this.player = player;
+        this.slots = slots;
+        this.cards = cards;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Creates a claim of the cards a player has tokens on.
+     *
+     * @param table  - the table.
+     * @param player - the player making the claim.
+     * @return - the claim.
+     */
+    static Claim of(Table table, int player) {
+        int[] slots = table.getPlayerTokens(player);
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; ++i)
+            cards[i] = table.cardAt(slots[i]);
+        return new Claim(player, slots, cards, System.nanoTime());
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+
+import java.util.BitSet;
+
+/**
+ * The rules the dealer resolves a batch of set claims by, shared with Replay so a replayed game is judged by the very
+ * same rules. The claims of a batch are resolved in the order they were made, against one snapshot of the cards on the
+ * table taken when the batch starts (only the dealer changes the cards, and it removes those of the points only once
+ * the whole batch is resolved). A claim is rejected, without a penalty, if it is not a full set of tokens, if its cards
+ * changed since it was made, or if an earlier point in the batch took one of its slots. Otherwise it is a point if
+ * its cards form a legal set, and a penalty if they do not.
+ * Not thread safe (used by the dealer thread only).
+ */
+public class ClaimBatch {
+
+    private final Env env;
+
+    /**
+     * The cards on the table when the batch started.
+     */
+    private final int[] cards;
+
+    /**
+     * The slots of the points awarded in the batch so far.
+     */
+    private final BitSet claimedSlots = new BitSet();
+
+    public ClaimBatch(Env env) {
+        this.env = env;
+        cards = new int[env.config.tableSize];
+    }
+
+    /**
+     * Starts a new batch on the current cards of a table.
+     *
+     * @param table - the table.
+     */
+    public void start(Table table) {
+        claimedSlots.clear();
+        table.copyCards(cards);
+    }
+
+    /**
+     * Resolves the next claim of the batch. A point takes the slots of the claim for the rest of the batch.
+     *
+     * @param claim - the claim.
+     * @return - GameJournal.POINT, GameJournal.PENALTY or GameJournal.REJECTED.
+     */
+    public int resolve(Claim claim) {
+        if (!current(claim))
+            return GameJournal.REJECTED;
+        if (!env.util.testSet(claim.cards))
+            return GameJournal.PENALTY;
+        for (int slot : claim.slots)
+            claimedSlots.set(slot);
+        return GameJournal.POINT;
+    }
+
+    /**
+     * Checks that a claim is still about the cards on the table: a full set of tokens, on cards that are all still in
+     * their slots and were not taken by an earlier claim in the batch.
+     */
+    private boolean current(Claim claim) {
+        if (claim.slots.length != env.config.featureSize)
+            return false;
+        for (int i = 0; i < claim.slots.length; ++i)
+            if (claim.cards[i] == Table.NONE || claimedSlots.get(claim.slots[i]) || cards[claim.slots[i]] != claim.cards[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * @return - true iff a point was awarded in the batch.
+     */
+    public boolean anyPoints() {
+        return !claimedSlots.isEmpty();
+    }
+
+    /**
+     * Returns the slots of the points awarded in the batch, whose cards are to be removed.
+     *
+     * @return - the slots, in ascending order.
+     */
+    public int[] claimedSlots() {
+        return claimedSlots.stream().toArray();
+    }
+}
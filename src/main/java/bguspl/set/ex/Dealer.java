@@ -1,17 +1,20 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.Metrics;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the dealer's threads and data
  */
 public class Dealer implements Runnable {
 
-    private Thread dealerThread;
+    private volatile Thread dealerThread;
     /**
      * The game environment object.
      */
@@ -23,30 +26,63 @@ public class Dealer implements Runnable {
     private final Table table;
     private final Player[] players;
 
-    /**
-     * The list of card ids that are left in the dealer's deck.
-     */
-    private final List<Integer> deck;
-
     /**
      * True iff game should be terminated.
      */
     private volatile boolean terminate;
 
+    /**
+     * The countdown display refresh rate while the warning (with milliseconds) is shown.
+     */
     private final long RESHUFFLE_TIMER_REFRESH_RATE_SHORT = 33;
 
-    // This is basically a second, but I wanted an excuse to use a prime number
-    private final long RESHUFFLE_TIMER_REFRESH_RATE_LONG = 997;
-    private long RESHUFFLE_TIMER_REFRESH_RATE;
+    /**
+     * The next tick of the timer display and the reshuffle deadline, on the GameTimer (used by the dealer thread only).
+     * The timer tasks only wake the dealer up, which updates the display itself (see displayTimer).
+     */
+    private ScheduledFuture<?> displayTick;
+    private ScheduledFuture<?> reshuffleDeadline;
+    private boolean timersStopped = false;
+
+    /**
+     * True iff the timer display is due for an update (set by the display tick).
+     */
+    private volatile boolean displayDue = false;
+    private final Runnable displayTickTask = () -> {
+        displayDue = true;
+        LockSupport.unpark(dealerThread);
+    };
 
-    private final Lock declareSetLock;
+    /**
+     * The set claims waiting for the dealer, in the order they were made (players add to it without locking).
+     */
+    private final Queue<Claim> pendingClaims = new ConcurrentLinkedQueue<>();
 
-    private final Queue<Integer> setContenders;
+    /**
+     * Scratch space for removeCardsFromTable (used by the dealer thread only): the claims of the current batch by
+     * verdict, and the rules resolving them.
+     */
+    private final List<Claim> batch = new ArrayList<>();
+    private final List<Claim> accepted = new ArrayList<>();
+    private final List<Claim> penalized = new ArrayList<>();
+    private final List<Claim> rejected = new ArrayList<>();
+    private final ClaimBatch resolver;
+
+    /**
+     * Scratch space for placeCardsOnTable (used by the dealer thread only).
+     */
+    private final int[] emptySlots;
+    private final Random random = new Random();
+
+    /**
+     * The number of set claims the dealer resolved (points and penalties).
+     */
+    private long claims;
 
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime;
+    private volatile long reshuffleTime;
 
     /**
      * Used for handling the different game modes depending on turnTimeoutMillis
@@ -62,11 +98,10 @@ public class Dealer implements Runnable {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
         terminate = false;
 
-        declareSetLock = new Lock();
-        setContenders = new PriorityQueue<>();
+        emptySlots = new int[env.config.tableSize];
+        resolver = new ClaimBatch(env);
 
         if (env.config.turnTimeoutMillis < 0)
             turnTimeoutMode = TurnTimeoutMode.NO_CLOCK;
@@ -75,8 +110,6 @@ public class Dealer implements Runnable {
         else
             turnTimeoutMode = TurnTimeoutMode.NORMAL_CLOCK;
 
-        RESHUFFLE_TIMER_REFRESH_RATE = RESHUFFLE_TIMER_REFRESH_RATE_LONG;
-
         reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
         if (turnTimeoutMode == TurnTimeoutMode.NO_CLOCK)
             reshuffleTime = Long.MAX_VALUE;
@@ -91,19 +124,25 @@ public class Dealer implements Runnable {
     public void run() {
         dealerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        env.journal.record(GameJournal.GAME_START, players.length, env.config.tableSize, env.config.deckSize);
 
         for (Player player : players) {
-            new Thread(player, env.config.playerNames[player.id]).start();
+            player.start();
             player.waitForInitializationComplete();
         }
 
+        long reshuffleStart = 0;
         while (!shouldFinish()) {
             placeCardsOnTable();
+            if (reshuffleStart != 0)
+                Metrics.RESHUFFLE_DURATION.record(System.nanoTime() - reshuffleStart);
             updateTimerDisplay(true);
             timerLoop();
             updateTimerDisplay(true);
+            reshuffleStart = System.nanoTime();
             removeAllCardsFromTable();
         }
+        stopTimers();
         announceWinners();
 
         for (int i = players.length - 1; i >= 0; i--) {
@@ -119,15 +158,15 @@ public class Dealer implements Runnable {
     private void timerLoop() {
         if (turnTimeoutMode == TurnTimeoutMode.NO_CLOCK || turnTimeoutMode == TurnTimeoutMode.LAST_ACTION_CLOCK)
             while (!terminate && table.setOnTable()) {
+                Metrics.DEALER_ITERATIONS.increment();
                 sleepUntilWokenOrTimeout();
-                updateTimerDisplay(false);
                 removeCardsFromTable();
                 placeCardsOnTable();
             }
         else
             while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+                Metrics.DEALER_ITERATIONS.increment();
                 sleepUntilWokenOrTimeout();
-                updateTimerDisplay(false);
                 removeCardsFromTable();
                 placeCardsOnTable();
             }
@@ -138,7 +177,7 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
-        dealerThread.interrupt();
+        LockSupport.unpark(dealerThread); // not an interrupt, which park leaves set for the joins of the players
     }
 
     /**
@@ -147,126 +186,172 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(table.getDeck(), 1).isEmpty();
+        return terminate || table.availableSets() == 0;
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Resolves all the pending set claims as one batch, in the order they were made (see ClaimBatch), and removes the
+     * cards of the accepted ones from the table in a single change.
      */
     private void removeCardsFromTable() {
-        if (setContenders.isEmpty())
+        for (Claim claim = pendingClaims.poll(); claim != null; claim = pendingClaims.poll())
+            batch.add(claim);
+        if (batch.isEmpty())
             return;
 
-        synchronized (declareSetLock) {
-            while (!setContenders.isEmpty()) {
-                int player = setContenders.remove();
-                Integer[] playerTokens = table.getPlayerTokens(player).toArray(new Integer[0]);
-                int[] playerCards = new int[playerTokens.length];
-
-                boolean isSet = true;
-                for (int i = 0; i < playerTokens.length; i++) {
-                    if (table.slotToCard[playerTokens[i]] != null)
-                        playerCards[i] = table.slotToCard[playerTokens[i]];
-                    else {
-                        playerCards[i] = -1;
-                        isSet = false;
-                    }
-                }
-
-                if (playerCards.length != env.config.featureSize)
-                    isSet = false;
-
-                if (isSet)
-                    isSet = env.util.testSet(playerCards);
-
-                // Reaching this code isSet tells us whether the player has a legitimate set
-                if (isSet) {
-                    for (int slot : playerTokens) {
-                        table.removeCard(slot);
-                        deck.remove((Integer) slot); // updating dealer.deck in case testing is needed.
-                        updateTimerDisplay(true);
-                    }
-                    players[player].point();
-                } else {
-                    players[player].penalty();
-                }
+        resolver.start(table);
+        for (Claim claim : batch) {
+            ++claims;
+            for (int i = 0; i < claim.slots.length; ++i)
+                env.journal.record(claim.nanoTime, GameJournal.CLAIM, claim.player, claim.slots[i], claim.cards[i]);
+            int verdict = resolver.resolve(claim);
+            env.journal.record(verdict, claim.player, 0, 0);
+            if (verdict == GameJournal.REJECTED) {
+                rejected.add(claim);
+                GameEvents.claimResolved(claim, false, "rejected");
+            } else if (verdict == GameJournal.PENALTY) {
+                penalized.add(claim);
+                GameEvents.claimResolved(claim, false, "penalty");
+            } else {
+                accepted.add(claim);
+                GameEvents.claimResolved(claim, true, "point");
             }
         }
+
+        if (resolver.anyPoints()) {
+            table.removeCards(resolver.claimedSlots());
+            updateTimerDisplay(true);
+        }
+        for (Claim claim : accepted) {
+            players[claim.player].point();
+            Metrics.CLAIM_LATENCY.record(System.nanoTime() - claim.nanoTime);
+        }
+        for (Claim claim : penalized) {
+            players[claim.player].penalty();
+            Metrics.CLAIM_LATENCY.record(System.nanoTime() - claim.nanoTime);
+        }
+        for (Claim claim : rejected)
+            players[claim.player].reject();
+        Metrics.CLAIM_POINTS.add(accepted.size());
+        Metrics.CLAIM_PENALTIES.add(penalized.size());
+        Metrics.CLAIM_REJECTIONS.add(rejected.size());
+
+        batch.clear();
+        accepted.clear();
+        penalized.clear();
+        rejected.clear();
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        ArrayList<Integer> cardsToPlace = IntStream.range(0, env.config.tableSize).filter(i -> !table.hasCard(i)).boxed().collect(Collectors.toCollection(() -> new ArrayList<>(env.config.tableSize)));
-        Collections.shuffle(cardsToPlace);
+        int empty = 0;
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            if (!table.hasCard(slot))
+                emptySlots[empty++] = slot;
+        if (empty == 0)
+            return;
 
-        int startingCards = table.countCards();
-        for (Integer i : cardsToPlace)
-            if (!table.deckEmpty())
-                synchronized (table) {
-                    table.placeCardFromDeck(i);
-                }
+        // deal in a random order, so the last cards of the deck land in random slots
+        for (int i = empty - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int slot = emptySlots[i];
+            emptySlots[i] = emptySlots[j];
+            emptySlots[j] = slot;
+        }
 
-        if (table.countCards() > startingCards && env.config.hints)
+        if (table.placeCardsFromDeck(Arrays.copyOf(emptySlots, empty)) > 0 && env.config.hints)
             table.hints();
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the thread is awakened for some purpose: a set claim, the reshuffle deadline or termination.
      */
     private void sleepUntilWokenOrTimeout() {
-        synchronized (declareSetLock) {
-            if (setContenders.isEmpty()) {
-                try {
-                    if (turnTimeoutMode == TurnTimeoutMode.NO_CLOCK)
-                        declareSetLock.wait();
-                    else
-                        declareSetLock.wait(RESHUFFLE_TIMER_REFRESH_RATE);
-                } catch (InterruptedException ignored) {
-                }
-            }
+        if (pendingClaims.isEmpty() && !deadlinePassed() && !displayDue) {
+            LockSupport.park(this);
+            if (pendingClaims.isEmpty() && !deadlinePassed() && !terminate && !displayDue)
+                Metrics.DEALER_IDLE_WAKEUPS.increment(); // e.g. a wake-up left over from claims already resolved
         }
+        if (displayDue)
+            displayTimer();
+    }
+
+    private boolean deadlinePassed() {
+        return turnTimeoutMode == TurnTimeoutMode.NORMAL_CLOCK && System.currentTimeMillis() >= reshuffleTime;
     }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset and/or update the countdown and the countdown display. On a reset, the reshuffle deadline is scheduled
+     * to wake the dealer up.
      */
     private void updateTimerDisplay(boolean reset) {
         if (turnTimeoutMode == TurnTimeoutMode.NO_CLOCK)
             return;
 
-        if (turnTimeoutMode == TurnTimeoutMode.LAST_ACTION_CLOCK) {
-            if (reset)
+        if (reset) {
+            env.journal.record(GameJournal.TIMER_RESET, (int) env.config.turnTimeoutMillis, 0, 0);
+            GameEvents.timerReset(env.config.turnTimeoutMillis);
+            if (turnTimeoutMode == TurnTimeoutMode.LAST_ACTION_CLOCK)
                 reshuffleTime = System.currentTimeMillis();
+            else {
+                reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+                if (reshuffleDeadline != null)
+                    reshuffleDeadline.cancel(false);
+                Thread dealer = dealerThread;
+                reshuffleDeadline = GameTimer.schedule(() -> LockSupport.unpark(dealer), env.config.turnTimeoutMillis);
+            }
+        }
+        displayTimer();
+    }
 
-            env.ui.setElapsed(System.currentTimeMillis() - reshuffleTime);
+    /**
+     * Shows the countdown (or the time elapsed), and schedules the next tick for when the value shown changes: the
+     * next second, the start of the warning, or the next refresh while the warning is shown.
+     */
+    private void displayTimer() {
+        displayDue = false;
+        if (timersStopped)
             return;
+        long delay;
+        if (turnTimeoutMode == TurnTimeoutMode.LAST_ACTION_CLOCK) {
+            long elapsed = System.currentTimeMillis() - reshuffleTime;
+            env.ui.setElapsed(elapsed);
+            delay = GameTimer.untilSecondChangesUp(elapsed);
+        } else {
+            long timeLeft = Math.max(reshuffleTime - System.currentTimeMillis(), 0);
+            boolean warn = timeLeft <= env.config.turnTimeoutWarningMillis;
+            env.ui.setCountdown(timeLeft, warn);
+            if (timeLeft == 0)
+                delay = -1; // the dealer resets the countdown
+            else if (warn)
+                delay = Math.min(RESHUFFLE_TIMER_REFRESH_RATE_SHORT, timeLeft);
+            else
+                delay = Math.min(GameTimer.untilSecondChangesDown(timeLeft),
+                        timeLeft - env.config.turnTimeoutWarningMillis);
         }
 
-        if (turnTimeoutMode == TurnTimeoutMode.NORMAL_CLOCK) {
-            if (reset)
-                reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-
-            long timeLeft = reshuffleTime - System.currentTimeMillis();
-            env.ui.setCountdown(timeLeft, timeLeft <= env.config.turnTimeoutWarningMillis);
+        if (displayTick != null)
+            displayTick.cancel(false);
+        displayTick = delay < 0 ? null : GameTimer.schedule(displayTickTask, delay);
+    }
 
-            RESHUFFLE_TIMER_REFRESH_RATE = timeLeft <= env.config.turnTimeoutWarningMillis ?
-                    RESHUFFLE_TIMER_REFRESH_RATE_SHORT : RESHUFFLE_TIMER_REFRESH_RATE_LONG;
-        }
+    private void stopTimers() {
+        timersStopped = true;
+        if (displayTick != null)
+            displayTick.cancel(false);
+        if (reshuffleDeadline != null)
+            reshuffleDeadline.cancel(false);
+        displayTick = null;
+        reshuffleDeadline = null;
     }
 
     /**
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        ArrayList<Integer> list = IntStream.range(0, env.config.tableSize).boxed().collect(Collectors.toCollection(() -> new ArrayList<>(env.config.tableSize)));
-        Collections.shuffle(list);
-
-        for (Integer i : list)
-            table.removeCardAndReturnToDeck(i);
-
-        table.shuffle();
+        table.returnAllCardsToDeck();
     }
 
     /**
@@ -289,13 +374,27 @@ public class Dealer implements Runnable {
         int[] winnersArray = new int[winners.size()];
         for (int i = 0; i < winnersArray.length; i++)
             winnersArray[i] = winners.get(i);
+        env.journal.record(GameJournal.GAME_END, topScore, winnersArray.length, 0);
         env.ui.announceWinner(winnersArray);
     }
 
-    public void declareSet(int id) {
-        synchronized (declareSetLock) {
-            setContenders.add(id);
-            declareSetLock.notifyAll();
-        }
+    /**
+     * Returns the number of set claims resolved so far (only reliable once the dealer thread terminated).
+     *
+     * @return - the number of claims resolved by the dealer.
+     */
+    public long claims() {
+        return claims;
+    }
+
+    /**
+     * Submits a set claim to the dealer (called by the players; never blocks).
+     *
+     * @param claim - the claim.
+     */
+    public void declareSet(Claim claim) {
+        GameEvents.claimSubmitted(claim);
+        pendingClaims.add(claim);
+        LockSupport.unpark(dealerThread);
     }
 }
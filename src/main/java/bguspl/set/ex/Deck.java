@@ -0,0 +1,138 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * The cards that are neither on the table nor out of the game, in random order. Cards are kept in a primitive array
+ * with a live-size cursor and an index of each card's position in it, so drawing, membership checks and removals are
+ * all O(1). Not thread safe (the table guards it).
+ *
+ * @inv position[cards[i]] == i for all 0 <= i < size
+ * @inv position[card] == -1 iff card is not in the deck
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck, in cards[0 .. size - 1] (the top of the deck is cards[size - 1]).
+     */
+    private final int[] cards;
+
+    /**
+     * The position of each card in cards (-1 if the card is not in the deck).
+     */
+    private final int[] position;
+
+    private int size;
+
+    private final Random random;
+
+    /**
+     * Creates a full, shuffled deck.
+     *
+     * @param deckSize - the number of cards in the deck.
+     * @param random   - the source of randomness for shuffling.
+     */
+    public Deck(int deckSize, Random random) {
+        this.random = random;
+        cards = new int[deckSize];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card) {
+            cards[card] = card;
+            position[card] = card;
+        }
+        size = deckSize;
+        shuffle();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * Returns a card of the deck by its position.
+     *
+     * @param index - the position (between 0 and size() - 1, the top of the deck last).
+     * @return - the card.
+     */
+    public int card(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Returns the card at the top of the deck (the next one to be drawn) without removing it.
+     *
+     * @return - the top card.
+     * @pre - the deck is not empty.
+     */
+    public int peek() {
+        return cards[size - 1];
+    }
+
+    /**
+     * Removes the card at the top of the deck.
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        int card = cards[--size];
+        position[card] = -1;
+        return card;
+    }
+
+    /**
+     * Removes a card from the deck, wherever it is (the top card takes its place).
+     *
+     * @param card - the card to remove.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int index = position[card];
+        if (index < 0)
+            return false;
+        int last = cards[--size];
+        cards[index] = last;
+        position[last] = index;
+        position[card] = -1;
+        return true;
+    }
+
+    /**
+     * Returns a card to the deck, in a random position.
+     *
+     * @param card - the card to add.
+     * @pre - the card is not in the deck.
+     */
+    public void add(int card) {
+        int index = random.nextInt(size + 1);
+        if (index < size) { // the card in the chosen position moves to the end
+            cards[size] = cards[index];
+            position[cards[size]] = size;
+        }
+        cards[index] = card;
+        position[card] = index;
+        ++size;
+    }
+
+    /**
+     * Shuffles the deck in place (Fisher-Yates).
+     */
+    public void shuffle() {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+            position[cards[i]] = i;
+            position[cards[j]] = j;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package bguspl.set.ex;
+
+import jdk.jfr.*;
+
+import java.util.Arrays;
+
+/**
+ * The Java Flight Recorder events of the game engine (category "Set Game"), so a recording shows the claims, the
+ * changes to the cards, the freezes and the countdown resets next to the lock contention, GC pauses etc. of the JVM.
+ * The events are enabled by default in any recording (set-game.jfc adds lock contention and the thresholds), and are
+ * only built while a recording is running, so they cost next to nothing otherwise. On runtimes without JFR (Java 8
+ * before update 262) nothing is emitted.
+ * The changes to the cards are duration events, started before the table is locked, so their duration includes the
+ * time waiting for the lock; the rest are instant events.
+ */
+final class GameEvents {
+
+    /**
+     * True iff the runtime supports JFR events (the event classes below are only loaded if it does).
+     */
+    private static final boolean AVAILABLE = available();
+
+    private GameEvents() {
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Description("A player declared a set")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class ClaimSubmitted extends Event {
+        @Label("Player")
+        int player;
+        @Label("Slots")
+        String slots;
+        @Label("Cards")
+        String cards;
+    }
+
+    @Name("bguspl.set.ClaimVerdict")
+    @Label("Claim Verdict")
+    @Description("The dealer resolved a set claim")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class ClaimVerdict extends Event {
+        @Label("Player")
+        int player;
+        @Label("Slots")
+        String slots;
+        @Label("Valid")
+        @Description("True iff the cards claimed are a legal set (false for a rejected claim, whose cards are not checked)")
+        boolean valid;
+        @Label("Verdict")
+        @Description("point, penalty, or rejected (the cards changed before the claim was checked)")
+        String verdict;
+        @Label("Wait Time")
+        @Description("The time from the claim to the verdict")
+        @Timespan(Timespan.NANOSECONDS)
+        long waitTime;
+    }
+
+    @Name("bguspl.set.CardsPlaced")
+    @Label("Cards Placed")
+    @Description("Cards were placed on the table (dealt from the deck)")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class CardsPlaced extends Event {
+        @Label("Slots")
+        String slots;
+        @Label("Cards")
+        String cards;
+    }
+
+    @Name("bguspl.set.CardsRemoved")
+    @Label("Cards Removed")
+    @Description("Cards were removed from the table (e.g. a collected set, or a card returned to the deck)")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class CardsRemoved extends Event {
+        @Label("Slots")
+        String slots;
+        @Label("Cards")
+        String cards;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Description("All the cards on the table were returned to the deck, and the deck was shuffled")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class Reshuffle extends Event {
+        @Label("Cards Returned")
+        int cards;
+    }
+
+    @Name("bguspl.set.FreezeStart")
+    @Label("Freeze Start")
+    @Description("A player was frozen after a verdict")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class FreezeStart extends Event {
+        @Label("Player")
+        int player;
+        @Label("Freeze Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long freezeTime;
+    }
+
+    @Name("bguspl.set.FreezeEnd")
+    @Label("Freeze End")
+    @Description("A frozen player can play again")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class FreezeEnd extends Event {
+        @Label("Player")
+        int player;
+    }
+
+    @Name("bguspl.set.TimerReset")
+    @Label("Timer Reset")
+    @Description("The dealer reset the countdown (or the time since the last action)")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class TimerReset extends Event {
+        @Label("Turn Timeout")
+        @Description("The time until the next reshuffle (0 for a clock counting up)")
+        @Timespan(Timespan.MILLISECONDS)
+        long turnTimeout;
+    }
+
+    static void claimSubmitted(Claim claim) {
+        if (!AVAILABLE)
+            return;
+        ClaimSubmitted event = new ClaimSubmitted();
+        if (event.isEnabled()) {
+            event.player = claim.player;
+            event.slots = Arrays.toString(claim.slots);
+            event.cards = Arrays.toString(claim.cards);
+            event.commit();
+        }
+    }
+
+    /**
+     * @param claim   - the claim.
+     * @param valid   - true iff the cards claimed are a legal set (false if they were not checked).
+     * @param verdict - "point", "penalty" or "rejected".
+     */
+    static void claimResolved(Claim claim, boolean valid, String verdict) {
+        if (!AVAILABLE)
+            return;
+        ClaimVerdict event = new ClaimVerdict();
+        if (event.isEnabled()) {
+            event.player = claim.player;
+            event.slots = Arrays.toString(claim.slots);
+            event.valid = valid;
+            event.verdict = verdict;
+            event.waitTime = System.nanoTime() - claim.nanoTime;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts a CardsPlaced event.
+     *
+     * @return - the event to pass to cardsPlaced, or null if it is not recorded.
+     */
+    static Object beginCardsPlaced() {
+        if (!AVAILABLE)
+            return null;
+        CardsPlaced event = new CardsPlaced();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void cardsPlaced(Object started, int[] slots, int[] cards) {
+        if (started == null)
+            return;
+        CardsPlaced event = (CardsPlaced) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.slots = Arrays.toString(slots);
+            event.cards = Arrays.toString(cards);
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends a CardsPlaced event of a single card.
+     */
+    static void cardPlaced(Object started, int slot, int card) {
+        if (started != null)
+            cardsPlaced(started, new int[]{slot}, new int[]{card});
+    }
+
+    /**
+     * Starts a CardsRemoved event.
+     *
+     * @return - the event to pass to cardsRemoved, or null if it is not recorded.
+     */
+    static Object beginCardsRemoved() {
+        if (!AVAILABLE)
+            return null;
+        CardsRemoved event = new CardsRemoved();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void cardsRemoved(Object started, int[] slots, int[] cards) {
+        if (started == null)
+            return;
+        CardsRemoved event = (CardsRemoved) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.slots = Arrays.toString(slots);
+            event.cards = Arrays.toString(cards);
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends a CardsRemoved event of a single card.
+     */
+    static void cardRemoved(Object started, int slot, int card) {
+        if (started != null)
+            cardsRemoved(started, new int[]{slot}, new int[]{card});
+    }
+
+    /**
+     * Starts a Reshuffle event.
+     *
+     * @return - the event to pass to reshuffled, or null if it is not recorded.
+     */
+    static Object beginReshuffle() {
+        if (!AVAILABLE)
+            return null;
+        Reshuffle event = new Reshuffle();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void reshuffled(Object started, int cards) {
+        if (started == null)
+            return;
+        Reshuffle event = (Reshuffle) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.cards = cards;
+            event.commit();
+        }
+    }
+
+    static void freezeStarted(int player, long freezeMillis) {
+        if (!AVAILABLE)
+            return;
+        FreezeStart event = new FreezeStart();
+        if (event.isEnabled()) {
+            event.player = player;
+            event.freezeTime = freezeMillis;
+            event.commit();
+        }
+    }
+
+    static void freezeEnded(int player) {
+        if (!AVAILABLE)
+            return;
+        FreezeEnd event = new FreezeEnd();
+        if (event.isEnabled()) {
+            event.player = player;
+            event.commit();
+        }
+    }
+
+    static void timerReset(long turnTimeoutMillis) {
+        if (!AVAILABLE)
+            return;
+        TimerReset event = new TimerReset();
+        if (event.isEnabled()) {
+            event.turnTimeout = turnTimeoutMillis;
+            event.commit();
+        }
+    }
+}
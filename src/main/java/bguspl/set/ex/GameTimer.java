@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timer service that owns all the game deadlines and display ticks: the reshuffle deadline, the countdown and
+ * elapsed time displays, and the freezes of the players. Each consumer schedules its next tick for the moment its
+ * displayed value changes or its deadline passes, instead of polling. A single daemon thread, shared by all the games
+ * in the JVM, runs the timer tasks, so they only change some state and wake a thread or hand a task over to an
+ * executor: the display is updated by the woken thread, never on the timer thread.
+ */
+public final class GameTimer {
+
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    private GameTimer() {
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "game-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true); // ticks are cancelled all the time, don't keep them in the queue
+        return timer;
+    }
+
+    /**
+     * Runs a task on the timer thread after a delay.
+     *
+     * @param task        - the task to run.
+     * @param delayMillis - the delay in milliseconds.
+     * @return - the future to cancel the task with.
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return timer.schedule(task, Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of milliseconds until a time shown in whole seconds changes, as a time counting down.
+     *
+     * @param millis - the time left in milliseconds, as shown (i.e. displayed as millis / 1000).
+     * @return - the number of milliseconds until millis / 1000 changes (at least 1).
+     */
+    static long untilSecondChangesDown(long millis) {
+        return millis % 1000 + 1;
+    }
+
+    /**
+     * Returns the number of milliseconds until a time shown in whole seconds changes, as a time counting up.
+     *
+     * @param millis - the time passed in milliseconds, as shown (i.e. displayed as millis / 1000).
+     * @return - the number of milliseconds until millis / 1000 changes (at least 1).
+     */
+    static long untilSecondChangesUp(long millis) {
+        return 1000 - millis % 1000;
+    }
+}
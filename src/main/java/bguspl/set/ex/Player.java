@@ -1,12 +1,22 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.Histogram;
+import bguspl.set.Metrics;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class manages the players' threads and data
+ * This class manages the players' threads and data.
+ * A player runs either on its own thread (with another thread generating the key presses of a computer player), or,
+ * when there is a PlayerExecutor, as short tasks on the shared executor: a task handles the pending key presses and
+ * returns as soon as the player has to wait (for input, for the dealer's verdict or for a freeze to end), and the event
+ * the player waited for submits the next task.
  *
  * @inv id >= 0
  * @inv score >= 0
@@ -18,8 +28,6 @@ public class Player implements Runnable {
      */
     private static final long FREEZE_ADJUST = 997;
 
-    private final long PLAYER_TIMER_REFRESH_RATE = 500;
-
     /**
      * The game environment object.
      */
@@ -62,6 +70,12 @@ public class Player implements Runnable {
 
     private final BlockingQueue<Integer> inputBuffer;
 
+    /**
+     * The depth of the input queue after each key press is queued (computer players on the executor press their keys
+     * directly, without the queue).
+     */
+    private final Histogram inputDepth;
+
     private Dealer dealer;
 
     /*
@@ -72,17 +86,72 @@ public class Player implements Runnable {
     private volatile boolean initializationDoneFlag = false;
 
     /*
-     * a lock and some flags to deal with the synchronization logic for declaring sets.
+     * a lock and the dealer's verdict on the last set declared, to deal with the synchronization logic for declaring
+     * sets (the verdict is guarded by myLock).
      */
     public final Lock myLock = new Lock();
 
-    private volatile boolean waitingForDeclareResult = false;
+    private static final int NO_VERDICT = 0;
+    private static final int POINT = 1;
+    private static final int PENALTY = 2;
+    private static final int REJECTED = 3;
 
-    private volatile boolean declareResultIsPenalty = false;
+    private int verdict = NO_VERDICT;
 
-    private volatile boolean declareResultIsPoint = false;
     private volatile boolean aiStartedFlag = false;
 
+    /**
+     * The shared executor the player runs on (null if the player runs on its own thread).
+     */
+    private final PlayerExecutor executor;
+
+    /**
+     * Executor mode only: true iff a task of this player is submitted or running (so at most one runs at a time).
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable stepTask = this::step;
+
+    /**
+     * Executor mode only: true iff the player was woken since its current task started.
+     */
+    private volatile boolean wakeRequested = false;
+
+    /**
+     * Executor mode only: true iff the player declared a set and the dealer did not answer yet.
+     */
+    private volatile boolean awaitingVerdict = false;
+
+    /**
+     * The time the current freeze ends at, and whether the end of the freeze is still to be reported.
+     */
+    private volatile long frozenUntil = 0;
+    private volatile boolean frozen = false;
+    private final Runnable freezeTickTask = this::freezeTick;
+
+    /**
+     * Executor mode only: released once the player noticed it was terminated.
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Executor mode only: the number of key presses a task handles before giving the worker to other players.
+     */
+    private static final int STEP_BATCH = 16;
+
+    /*
+     * The state of a computer player: the cards on the table changed since it last looked at them, the time of its next
+     * key press (0 if not planned yet), whether a task is scheduled for that time (executor mode) and a lock to wait
+     * on for the table to change (thread mode).
+     */
+    private volatile boolean tableChanged = false;
+    private long nextKeyPressAt = 0;
+    private volatile boolean keyPressTimerPending = false;
+    private final Runnable keyPressTimerTask = () -> {
+        keyPressTimerPending = false;
+        wake();
+    };
+    private final Lock aiLock = new Lock();
+
     /**
      * The class constructor.
      *
@@ -99,6 +168,28 @@ public class Player implements Runnable {
         this.human = human;
         this.dealer = dealer;
         inputBuffer = new LinkedBlockingQueue<>(env.config.featureSize);
+        inputDepth = Metrics.histogram("player_" + id + "_input_queue_depth");
+        executor = PlayerExecutor.forConfig(env.config, env.logger);
+    }
+
+    /**
+     * Starts the player: on a new thread, or on the shared executor if there is one.
+     */
+    public void start() {
+        if (executor == null) {
+            new Thread(this, env.config.playerNames[id]).start();
+            return;
+        }
+
+        env.logger.info("player " + id + " starting on the shared executor.");
+        if (!human)
+            table.addCardsListener(this::cardsChanged);
+        synchronized (initalizationLock) {
+            initializationDoneFlag = true;
+            aiStartedFlag = true;
+            initalizationLock.notifyAll();
+        }
+        wake();
     }
 
     /**
@@ -124,29 +215,15 @@ public class Player implements Runnable {
                 continue;
             }
 
-            boolean tokensChanged = table.token(id, keyPress);
-
-            // if 3 tokens, notify dealer, wait till dealer finishes.
-            if (table.tokenAmount(id) == env.config.featureSize && tokensChanged) {
-                dealer.declareSet(id);
-                synchronized (myLock) {
-                    try {
-                        waitingForDeclareResult = true;
-                        myLock.notifyAll();
-                        myLock.wait();
-
-                        waitingForDeclareResult = false;
-
-                        if (declareResultIsPenalty)
-                            freeze(env.config.penaltyFreezeMillis);
-                        else if (declareResultIsPoint)
-                            freeze(env.config.pointFreezeMillis);
-
-                        declareResultIsPenalty = false;
-                        declareResultIsPoint = false;
-
-                    } catch (InterruptedException ignored) {
-                    }
+            if (handleKeyPress(keyPress)) {
+                dealer.declareSet(Claim.of(table, id));
+                int result = awaitVerdict();
+                try {
+                    if (result == PENALTY)
+                        freeze(env.config.penaltyFreezeMillis);
+                    else if (result == POINT)
+                        freeze(env.config.pointFreezeMillis);
+                } catch (InterruptedException ignored) {
                 }
                 inputBuffer.clear();
             }
@@ -159,6 +236,199 @@ public class Player implements Runnable {
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Places or removes a token for a key press.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the player now has a full set of tokens to declare.
+     */
+    private boolean handleKeyPress(int slot) {
+        boolean tokensChanged = table.token(id, slot);
+        return tokensChanged && table.tokenAmount(id) == env.config.featureSize;
+    }
+
+    /**
+     * Waits until the dealer delivers its verdict on the set declared (thread mode only).
+     *
+     * @return - the verdict, or NO_VERDICT if the player was terminated while waiting.
+     */
+    private int awaitVerdict() {
+        synchronized (myLock) {
+            while (verdict == NO_VERDICT && !terminate)
+                try {
+                    myLock.wait();
+                } catch (InterruptedException ignored) {
+                }
+            int result = verdict;
+            verdict = NO_VERDICT;
+            return result;
+        }
+    }
+
+    /**
+     * Hands the dealer's verdict on the set declared to the player.
+     *
+     * @param result - POINT, PENALTY or REJECTED.
+     */
+    private void deliverVerdict(int result) {
+        if (executor == null) {
+            synchronized (myLock) {
+                verdict = result;
+                myLock.notifyAll();
+            }
+            return;
+        }
+
+        long freezeMillis = result == POINT ? env.config.pointFreezeMillis :
+                result == PENALTY ? env.config.penaltyFreezeMillis : 0;
+        frozenUntil = System.currentTimeMillis() + freezeMillis;
+        if (freezeMillis > 0)
+            freezeStarted(freezeMillis);
+        awaitingVerdict = false;
+        freezeTick();
+    }
+
+    private void freezeStarted(long freezeMillis) {
+        frozen = true;
+        env.journal.record(GameJournal.FREEZE, id, (int) freezeMillis, 0);
+        GameEvents.freezeStarted(id, freezeMillis);
+    }
+
+    /**
+     * Shows the time left to the freeze, and schedules the next tick for when the value shown changes (executor mode
+     * only: the GameTimer hands the tick over to the executor). Once the freeze is over, the player is resumed.
+     */
+    private void freezeTick() {
+        long left = frozenUntil - System.currentTimeMillis();
+        if (left > 0 && !terminate) {
+            long shown = left + FREEZE_ADJUST;
+            env.ui.setFreeze(id, shown);
+            executor.schedule(freezeTickTask, Math.min(GameTimer.untilSecondChangesDown(shown), left));
+            return;
+        }
+        freezeEnded();
+        inputBuffer.clear();
+        wake();
+    }
+
+    private void freezeEnded() {
+        env.ui.setFreeze(id, 0);
+        if (frozen) {
+            frozen = false;
+            GameEvents.freezeEnded(id);
+        }
+    }
+
+    /**
+     * Submits a task for the player, unless one is already submitted or running, in which case that task runs again
+     * once it is done (executor mode only).
+     */
+    private void wake() {
+        wakeRequested = true;
+        if (scheduled.compareAndSet(false, true))
+            executor.execute(stepTask);
+    }
+
+    private boolean ready() {
+        return !terminate && !awaitingVerdict && System.currentTimeMillis() >= frozenUntil;
+    }
+
+    /**
+     * A task of the player (executor mode only): handles up to STEP_BATCH key presses (for a computer player, only the
+     * ones that are due), and returns once the player has to wait or the batch is done.
+     */
+    private void step() {
+        wakeRequested = false;
+        boolean batchDone = false;
+        for (int handled = 0; ready(); ++handled) {
+            if (handled == STEP_BATCH) {
+                batchDone = true;
+                break;
+            }
+            Integer slot = inputBuffer.poll();
+            if (slot == null && !human)
+                slot = computerKeyPress();
+            if (slot == null)
+                break;
+            if (handleKeyPress(slot)) {
+                awaitingVerdict = true; // before declaring, the dealer may answer right away
+                dealer.declareSet(Claim.of(table, id));
+            }
+        }
+
+        scheduled.set(false);
+        if (terminate)
+            stopped.countDown();
+        else if (batchDone || wakeRequested)
+            wake(); // go to the back of the queue
+    }
+
+    /**
+     * Returns the next key press of a computer player if it is due, and otherwise makes sure the player is woken when
+     * it is (executor mode only).
+     *
+     * @return - the slot to press, or null if there is none yet.
+     */
+    private Integer computerKeyPress() {
+        long now = System.currentTimeMillis();
+        if (tableChanged || nextKeyPressAt == 0) { // take a (new) look at the cards
+            tableChanged = false;
+            nextKeyPressAt = now + reactionTime();
+        }
+        if (now < nextKeyPressAt) {
+            if (!keyPressTimerPending) {
+                keyPressTimerPending = true;
+                executor.schedule(keyPressTimerTask, nextKeyPressAt - now);
+            }
+            return null;
+        }
+
+        int slot = chooseSlot();
+        if (slot == Table.NONE)
+            return null; // nothing to do until the cards change
+        nextKeyPressAt = 0;
+        return slot;
+    }
+
+    /**
+     * Called by the table when the cards on it change (computer players only).
+     */
+    private void cardsChanged() {
+        tableChanged = true;
+        if (executor != null)
+            wake();
+        else
+            synchronized (aiLock) {
+                aiLock.notifyAll();
+            }
+    }
+
+    private long reactionTime() {
+        return ThreadLocalRandom.current().nextLong(env.config.computerReactionMinMillis,
+                env.config.computerReactionMaxMillis + 1);
+    }
+
+    /**
+     * Chooses a random slot with a card the player has no token on, or, if the player holds a full set of tokens (that
+     * the dealer rejected), one of its tokens to remove.
+     *
+     * @return - the slot, or Table.NONE if there are not enough cards to complete a set.
+     */
+    private int chooseSlot() {
+        boolean full = table.tokenAmount(id) >= env.config.featureSize;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int chosen = Table.NONE;
+        int candidates = 0;
+        int cards = 0;
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            if (table.hasCard(slot)) {
+                ++cards;
+                if (table.hasToken(id, slot) == full && random.nextInt(++candidates) == 0)
+                    chosen = slot;
+            }
+        return cards > env.config.featureSize || (cards == env.config.featureSize && !full) ? chosen : Table.NONE;
+    }
+
     public void waitForInitializationComplete() {
         synchronized (initalizationLock) {
             while (!initializationDoneFlag || (!human && !aiStartedFlag)) {
@@ -170,21 +440,29 @@ public class Player implements Runnable {
         }
     }
 
+    /**
+     * Freezes the player thread (thread mode only). The thread sleeps until the freeze is over, waking up to update
+     * the display whenever the value shown changes.
+     */
     private void freeze(long freezeTime) throws InterruptedException {
-        long currentTime = System.currentTimeMillis();
-        while (System.currentTimeMillis() < currentTime + freezeTime) {
-            env.ui.setFreeze(this.id, currentTime + freezeTime - System.currentTimeMillis() + FREEZE_ADJUST);
-            Thread.sleep(PLAYER_TIMER_REFRESH_RATE);
+        frozenUntil = System.currentTimeMillis() + freezeTime;
+        if (freezeTime > 0)
+            freezeStarted(freezeTime);
+        for (long left = freezeTime; left > 0; left = frozenUntil - System.currentTimeMillis()) {
+            long shown = left + FREEZE_ADJUST;
+            env.ui.setFreeze(id, shown);
+            Thread.sleep(Math.min(GameTimer.untilSecondChangesDown(shown), left));
         }
-        env.ui.setFreeze(id, 0);
+        freezeEnded();
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Creates an additional thread for an AI (computer) player. The thread presses a key each reaction time (starting
+     * over whenever the cards on the table change), and waits for the cards to change when there is nothing to press.
+     * If the queue of key presses is full, the thread waits until it is not full.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
+        table.addCardsListener(this::cardsChanged);
         aiThread = new Thread(() -> {
 
             synchronized (initalizationLock) {
@@ -194,8 +472,12 @@ public class Player implements Runnable {
             }
             while (!terminate) {
                 try {
-                    inputBuffer.put((int) (Math.random() * env.config.tableSize));
-                } catch (Exception ignored) {
+                    int slot = awaitComputerKeyPress();
+                    if (slot != Table.NONE) {
+                        inputBuffer.put(slot);
+                        inputDepth.record(inputBuffer.size());
+                    }
+                } catch (InterruptedException ignored) {
                 }
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
@@ -203,11 +485,42 @@ public class Player implements Runnable {
         aiThread.start();
     }
 
+    /**
+     * Waits until the next key press of a computer player is due (thread mode only).
+     *
+     * @return - the slot to press, or Table.NONE if the player was terminated.
+     */
+    private int awaitComputerKeyPress() throws InterruptedException {
+        synchronized (aiLock) {
+            long pressAt = System.currentTimeMillis() + reactionTime();
+            while (!terminate) {
+                long now = System.currentTimeMillis();
+                if (tableChanged) {
+                    tableChanged = false;
+                    pressAt = now + reactionTime();
+                }
+                if (now < pressAt) {
+                    aiLock.wait(pressAt - now);
+                    continue;
+                }
+                int slot = chooseSlot();
+                if (slot != Table.NONE)
+                    return slot;
+                aiLock.wait();
+            }
+            return Table.NONE;
+        }
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
         terminate = true;
+        if (executor != null) {
+            wake();
+            return;
+        }
         playerThread.interrupt();
         if (!human)
             aiThread.interrupt();
@@ -221,7 +534,11 @@ public class Player implements Runnable {
     public void keyPressed(int slot) {
         if (human)
             try {
-                inputBuffer.offer(slot);
+                if (inputBuffer.offer(slot)) {
+                    inputDepth.record(inputBuffer.size());
+                    if (executor != null)
+                        wake();
+                }
             } catch (Exception ignored) {
             }
     }
@@ -233,35 +550,24 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        synchronized (myLock) {
-            while (!waitingForDeclareResult) {
-                try {
-                    myLock.wait();
-                } catch (InterruptedException ignored) {
-                }
-            }
-            declareResultIsPoint = true;
-            myLock.notifyAll();
-        }
-
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
+        deliverVerdict(POINT);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        synchronized (myLock) {
-            while (!waitingForDeclareResult) {
-                try {
-                    myLock.wait();
-                } catch (InterruptedException ignored) {
-                }
-            }
-            declareResultIsPenalty = true;
-            myLock.notifyAll();
-        }
+        deliverVerdict(PENALTY);
+    }
+
+    /**
+     * Tell the player its claim was dropped, because its cards changed before the dealer checked it (no point and no
+     * penalty).
+     */
+    public void reject() {
+        deliverVerdict(REJECTED);
     }
 
     public int score() {
@@ -270,7 +576,10 @@ public class Player implements Runnable {
 
     public void join() {
         try {
-            playerThread.join();
+            if (executor != null)
+                stopped.await();
+            else
+                playerThread.join();
         } catch (InterruptedException ignored) {
         }
     }
@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The executor the players run on when config.playerExecution is "Executor" or "Virtual", instead of a thread per
+ * player (and another one per computer player). The player logic runs in short tasks that never block, so a few
+ * worker threads can serve any number of players in any number of games, and the GameTimer hands delayed tasks (e.g.
+ * the next key press of a computer player) over to the workers. All the threads are daemons, and one executor is
+ * shared by all the games in the JVM with the same settings.
+ */
+class PlayerExecutor {
+
+    private static final Map<String, PlayerExecutor> executors = new ConcurrentHashMap<>();
+
+    private final Executor workers;
+
+    private PlayerExecutor(Executor workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Returns the executor for the player execution mode of a configuration.
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger to report an unsupported mode to.
+     * @return - the shared executor, or null if each player should run on its own thread.
+     */
+    static PlayerExecutor forConfig(Config config, Logger logger) {
+        switch (config.playerExecution) {
+            case "Threads":
+                return null;
+            case "Executor":
+            case "Virtual":
+                return executors.computeIfAbsent(config.playerExecution + ':' + config.playerExecutorThreads,
+                        key -> new PlayerExecutor(createWorkers(config, logger)));
+            default:
+                logger.severe("warning: unknown player execution " + config.playerExecution + ". Using Threads.");
+                return null;
+        }
+    }
+
+    private static Executor createWorkers(Config config, Logger logger) {
+        if (config.playerExecution.equals("Virtual")) {
+            try { // looked up by reflection, so the game still builds and runs on runtimes without virtual threads
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.severe("warning: virtual threads are not supported by this runtime. Using Executor.");
+            }
+        }
+        int threads = config.playerExecutorThreads > 0 ?
+                config.playerExecutorThreads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(threads, daemons("player-worker"));
+    }
+
+    private static ThreadFactory daemons(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    void execute(Runnable task) {
+        workers.execute(task);
+    }
+
+    /**
+     * Runs a task on the workers after a delay.
+     *
+     * @param task        - the task to run.
+     * @param delayMillis - the delay in milliseconds.
+     */
+    void schedule(Runnable task, long delayMillis) {
+        GameTimer.schedule(() -> workers.execute(task), delayMillis);
+    }
+}
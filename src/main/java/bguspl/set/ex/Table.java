@@ -1,67 +1,141 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.FeatureTable;
+import bguspl.set.GameJournal;
+import bguspl.set.Metrics;
+import bguspl.set.SetIndex;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
+ * Locking: the card and the tokens of each slot are protected by that slot's lock (slotLocks), so players working on
+ * different slots never wait for each other. Changes to the cards (and the deck and set indexes derived from them)
+ * are also serialized by cardsLock, which players never take.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
 public class Table {
 
+    /**
+     * The value of an empty entry in slotToCard and cardToSlot.
+     */
+    public static final int NONE = -1;
+
     /**
      * The game environment object.
      */
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between a slot and the card placed in it (NONE if none).
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    protected final int[] slotToCard; // card per slot (if any)
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a card and the slot it is in (NONE if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] cardToSlot; // slot per card (if any)
 
     /**
-     * Holds players tokens
+     * Holds players tokens: a bitmask of slots per player, tokenWords longs each (bit s of a player's mask is set iff
+     * the player has a token on slot s).
      */
-    protected final Vector<Integer>[] playerTokens;
+    protected final AtomicLongArray playerTokens;
+    private final int tokenWords;
 
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * One lock per slot: a write lock to change the card in the slot, a read lock to work on the tokens in the slot.
+     */
+    private final StampedLock[] slotLocks;
+
+    /**
+     * Serializes the changes to the cards on the table, and protects the deck and the set indexes.
+     */
+    private final Lock cardsLock = new Lock();
+
+    /**
+     * The legal sets currently on the table (each one an array of slots), kept up to date on every card change.
+     */
+    private final List<int[]> tableSets;
+
+    /**
+     * The number of legal sets on the table each slot takes part in.
+     */
+    private final int[] slotSets;
+
+    /**
+     * All the legal sets of the deck (shared by all the games with the same features), or null if the deck is too large
+     * to index (the sets left in the game are then searched for).
+     */
+    private final SetIndex setIndex;
+
+    /**
+     * The sets of setIndex that can no longer be collected, because one of their cards left the game (null without an
+     * index).
+     */
+    private final BitSet setsGone;
+
+    /**
+     * The number of sets of setIndex whose cards are all still in the deck or on the table.
+     */
+    private int availableSets;
+
+    /**
+     * Called after every change to the cards on the table (under cardsLock, so they must not block).
+     */
+    private final List<Runnable> cardsListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Scratch space for indexSetsWith (used under cardsLock only).
+     */
+    private final int[] otherSlots;
+    private final int[] combination;
+    private final int[] setCards;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (NONE if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (NONE if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
 
-        // Java does not allow an array of vectors to be created. Must be cast.
-        //noinspection unchecked
-        this.playerTokens = (Vector<Integer>[]) new Vector[env.config.players];
-
-        for (int i = 0; i < env.config.players; i++)
-            playerTokens[i] = new Vector<>();
+        tokenWords = (slotToCard.length + Long.SIZE - 1) / Long.SIZE;
+        playerTokens = new AtomicLongArray(env.config.players * tokenWords);
 
-        deck = new ArrayList<>(env.config.deckSize);
-        for (int i = 0; i < env.config.deckSize; i++)
-            deck.add(i);
+        deck = new Deck(env.config.deckSize, new Random());
 
         // in case slotToCard is not empty:
-        for (Integer i : slotToCard)
-            deck.remove(i);
-
-        Collections.shuffle(deck);
+        for (int card : slotToCard)
+            if (card != NONE)
+                deck.remove(card);
+
+        slotLocks = new StampedLock[slotToCard.length];
+        for (int i = 0; i < slotLocks.length; i++)
+            slotLocks[i] = new StampedLock();
+
+        setIndex = SetIndex.forConfig(env.config);
+        setsGone = setIndex != null ? new BitSet(setIndex.setCount) : null;
+        availableSets = setIndex != null ? setIndex.setCount : 0;
+
+        tableSets = new ArrayList<>();
+        slotSets = new int[slotToCard.length];
+        otherSlots = new int[slotToCard.length];
+        combination = new int[Math.max(env.config.featureSize - 2, 0)];
+        setCards = new int[Math.max(env.config.featureSize - 1, 0)];
+        reindexSets();
     }
 
     /**
@@ -70,25 +144,154 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyMapping(env.config.tableSize), emptyMapping(env.config.deckSize));
+    }
+
+    private static int[] emptyMapping(int size) {
+        int[] mapping = new int[size];
+        Arrays.fill(mapping, NONE);
+        return mapping;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
-    public synchronized void hints() {
-        List<Integer> deck0 = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck0, Integer.MAX_VALUE).forEach(set -> {
+    public void hints() {
+        synchronized (cardsLock) {
+            hintsWorker();
+        }
+    }
+
+    private void hintsWorker() {
+        tableSets.forEach(slots -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+            int[] set = Arrays.stream(slots).map(slot -> slotToCard[slot]).sorted().toArray();
+            sb.append("slots: ").append(Arrays.toString(slots)).append(" features: [");
+            for (int i = 0; i < set.length; ++i) {
+                sb.append(i == 0 ? "[" : ", [");
+                for (int j = 0; j < env.config.featureCount; ++j)
+                    sb.append(j == 0 ? "" : ", ").append(env.config.featureTable.feature(set[i], j));
+                sb.append(']');
+            }
+            System.out.println(sb.append(']'));
         });
     }
 
-    public synchronized boolean setOnTable() {
-        List<Integer> deck0 = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        return !env.util.findSets(deck0, Integer.MAX_VALUE).isEmpty();
+    public boolean setOnTable() {
+        synchronized (cardsLock) {
+            return !tableSets.isEmpty();
+        }
+    }
+
+    /**
+     * Count the number of legal sets currently on the table.
+     *
+     * @return - the number of legal sets on the table.
+     */
+    public int countSets() {
+        synchronized (cardsLock) {
+            return tableSets.size();
+        }
+    }
+
+    /**
+     * Checks whether the card in a slot takes part in a legal set on the table.
+     *
+     * @param slot - the slot to check.
+     * @return - true iff the card in the slot is part of at least one legal set on the table.
+     */
+    public boolean slotInSet(int slot) {
+        synchronized (cardsLock) {
+            return slotSets[slot] > 0;
+        }
+    }
+
+    /**
+     * Adds all the legal sets the card in the slot takes part in to the index. Any featureSize - 1 cards determine
+     * the card completing them, so this goes over the (featureSize - 2)-combinations of the other cards on the table
+     * (i.e. O(tableSize) for featureSize 3).
+     *
+     * @param slot - the slot a card was just placed in.
+     * @pre - the sets of all the other cards on the table are already indexed.
+     */
+    private void indexSetsWith(int slot) {
+        int r = env.config.featureSize;
+        if (!FeatureTable.completesSets(r)) { // the completing card is not unique (or not computed), search the table
+            reindexSets();
+            return;
+        }
+
+        int n = 0;
+        for (int other = 0; other < slotToCard.length; ++other)
+            if (other != slot && slotToCard[other] != NONE)
+                otherSlots[n++] = other;
+        if (n < r - 1)
+            return;
+
+        for (int i = 0; i < r - 2; ++i)
+            combination[i] = i;
+        setCards[0] = slotToCard[slot];
+
+        // the completing card must be in a later slot than the rest, so every set is indexed exactly once
+        while (combination[r - 3] < n - 1) {
+            for (int i = 0; i < r - 2; ++i)
+                setCards[i + 1] = slotToCard[otherSlots[combination[i]]];
+            int card = env.config.featureTable.completeSet(setCards, r - 1);
+            int completing = card >= 0 ? cardToSlot[card] : NONE;
+            if (completing != NONE && completing != slot && completing > otherSlots[combination[r - 3]]) {
+                int[] set = new int[r];
+                set[0] = slot;
+                for (int i = 0; i < r - 2; ++i)
+                    set[i + 1] = otherSlots[combination[i]];
+                set[r - 1] = completing;
+                addSet(set);
+            }
+
+            // generate next combination in lexicographic order, leaving room for the completing slot
+            int t = r - 3;
+            while (t != 0 && combination[t] == n - r + 1 + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 2; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+
+    /**
+     * Removes all the legal sets the slot takes part in from the index.
+     *
+     * @param slot - the slot a card is about to be removed from.
+     */
+    private void unindexSetsWith(int slot) {
+        if (slotSets[slot] == 0)
+            return;
+        for (Iterator<int[]> it = tableSets.iterator(); it.hasNext(); ) {
+            int[] set = it.next();
+            for (int member : set)
+                if (member == slot) {
+                    it.remove();
+                    for (int other : set)
+                        --slotSets[other];
+                    break;
+                }
+        }
+    }
+
+    private void addSet(int[] slots) {
+        Arrays.sort(slots);
+        tableSets.add(slots);
+        for (int slot : slots)
+            ++slotSets[slot];
+    }
+
+    /**
+     * Rebuilds the index of legal sets on the table from scratch.
+     */
+    private void reindexSets() {
+        tableSets.clear();
+        Arrays.fill(slotSets, 0);
+        List<Integer> cards = Arrays.stream(slotToCard).filter(card -> card != NONE).boxed().collect(Collectors.toList());
+        if (cards.size() < env.config.featureSize)
+            return;
+        env.util.findSets(cards, Integer.MAX_VALUE).forEach(set -> addSet(Arrays.stream(set).map(card -> cardToSlot[card]).toArray()));
     }
 
     /**
@@ -96,16 +299,49 @@ public class Table {
      *
      * @return - the number of cards on the table.
      */
-    public synchronized int countCards() {
+    public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            if (cardAt(slot) != NONE)
                 ++cards;
         return cards;
     }
 
-    public synchronized boolean hasCard(int slot) {
-        return slotToCard[slot] != null;
+    public boolean hasCard(int slot) {
+        return cardAt(slot) != NONE;
+    }
+
+    /**
+     * Copies the cards in all the slots, as one consistent snapshot (under the lock of the changes to the cards).
+     *
+     * @param cards - an array of at least tableSize entries, set to the card in each slot (NONE if none).
+     */
+    public void copyCards(int[] cards) {
+        synchronized (cardsLock) {
+            System.arraycopy(slotToCard, 0, cards, 0, slotToCard.length);
+        }
+    }
+
+    /**
+     * Returns the card in a slot (an optimistic read, that only retries under the slot's lock if the card changed
+     * while reading it).
+     *
+     * @param slot - the slot.
+     * @return - the card in the slot, or NONE if none.
+     */
+    public int cardAt(int slot) {
+        StampedLock lock = slotLocks[slot];
+        long stamp = lock.tryOptimisticRead();
+        int card = slotToCard[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                card = slotToCard[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return card;
     }
 
     /**
@@ -115,75 +351,382 @@ public class Table {
      * @param slot - the slot in which the card should be placed.
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
+        Object event = GameEvents.beginCardsPlaced();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            placeCardWorker(card, slot);
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardPlaced(event, slot, card);
+        }
+    }
+
+    private void placeCardWorker(int card, int slot) {
         if (!deck.contains(card))
             throw new RuntimeException("Table::placeCard called with a card not in the deck!");
         if (!legalSlot(slot))
             throw new RuntimeException("Table::placeCard called with a non-existing slot!");
-        if (slotToCard[slot] != null) {
+        if (slotToCard[slot] != NONE) {
             throw new RuntimeException("Table::placeCard placing card where there is another card");
         }
+        long stamp = slotLocks[slot].writeLock();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {
+            deck.remove(card);
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            indexSetsWith(slot);
+
+            env.journal.record(GameJournal.CARD_PLACED, slot, card, 0);
+            env.ui.placeCard(card, slot);
+        } finally {
+            slotLocks[slot].unlockWrite(stamp);
         }
-
-        deck.remove((Integer) card);
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-
-        env.ui.placeCard(card, slot);
     }
 
-    public synchronized void placeCardFromDeck(int slot) {
-        placeCard(deck.get(0), slot);
+    public void placeCardFromDeck(int slot) {
+        Object event = GameEvents.beginCardsPlaced();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int card = deck.peek();
+            placeCardWorker(card, slot);
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardPlaced(event, slot, card);
+        }
     }
 
-    public synchronized void removeCardAndReturnToDeck(int slot) {
-        Integer card = removeCardWorker(slot);
-        if (card != null)
-            deck.add(card);
+    public void removeCardAndReturnToDeck(int slot) {
+        Object event = GameEvents.beginCardsRemoved();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int card = removeCardWorker(slot, GameJournal.CARD_RETURNED);
+            if (card != NONE)
+                deck.add(card);
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardRemoved(event, slot, card);
+        }
     }
 
-    private synchronized Integer removeCardWorker(int slot) {
+    // must be called under cardsLock; event is the journal event of the removal (CARD_REMOVED or CARD_RETURNED)
+    private int removeCardWorker(int slot, int event) {
         if (!legalSlot(slot))
             throw new RuntimeException();
+        long stamp = slotLocks[slot].writeLock();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {
+            for (int i = 0; i < env.config.players; i++)
+                removeTokenWorker(i, slot);
+
+            unindexSetsWith(slot);
+            int card = slotToCard[slot];
+            if (card != NONE) {
+                cardToSlot[card] = NONE;
+                env.journal.record(event, slot, card, 0);
+            }
+            slotToCard[slot] = NONE;
+
+            env.ui.removeCard(slot);
+            return card;
+        } finally {
+            slotLocks[slot].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a card from a grid slot on the table.
+     *
+     * @param slot - the slot from which to remove the card.
+     */
+    public void removeCard(int slot) {
+        Object event = GameEvents.beginCardsRemoved();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int card = removeCardWorker(slot, GameJournal.CARD_REMOVED);
+            if (card != NONE)
+                retireSetsOf(card);
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardRemoved(event, slot, card);
         }
+    }
 
-        for (int i = 0; i < env.config.players; i++)
-            removeToken(i, slot);
+    /**
+     * Deals cards from the top of the deck into empty slots as a single change: all the slots are locked together, so
+     * the players see either none or all of the new cards, and the user interface gets a single update.
+     *
+     * @param slots - the empty slots to deal into, in dealing order.
+     * @return - the number of cards dealt (less than slots.length if the deck ran out).
+     */
+    public int placeCardsFromDeck(int[] slots) {
+        Object event = GameEvents.beginCardsPlaced();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int count = Math.min(slots.length, deck.size());
+            int[] dealt = Arrays.copyOf(slots, count);
+            int[] locked = sortedSlots(dealt);
+            for (int slot : locked)
+                if (slotToCard[slot] != NONE)
+                    throw new RuntimeException("Table::placeCardsFromDeck placing card where there is another card");
+
+            int[] cards = new int[count];
+            long[] stamps = lockSlots(locked);
+            try {
+                for (int i = 0; i < count; ++i) {
+                    int card = deck.draw();
+                    cards[i] = card;
+                    cardToSlot[card] = dealt[i];
+                    slotToCard[dealt[i]] = card;
+                    indexSetsWith(dealt[i]);
+                    env.journal.record(GameJournal.CARD_PLACED, dealt[i], card, 0);
+                }
+                if (count > 0)
+                    env.ui.placeCards(cards, dealt);
+            } finally {
+                unlockSlots(locked, stamps);
+            }
+            if (count > 0)
+                cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardsPlaced(event, dealt, cards);
+            return count;
+        }
+    }
 
-        Integer card = slotToCard[slot];
-        if (card != null)
-            cardToSlot[card] = null;
-        slotToCard[slot] = null;
+    /**
+     * Removes the cards in some slots from the game as a single change (e.g. a set that was collected), along with
+     * all the tokens on them.
+     *
+     * @param slots - the slots from which to remove the cards.
+     */
+    public void removeCards(int[] slots) {
+        Object event = GameEvents.beginCardsRemoved();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int[] locked = sortedSlots(slots);
+            int[] cards = event == null ? null : new int[locked.length]; // only kept for the event
+            long[] stamps = lockSlots(locked);
+            try {
+                for (int i = 0; i < locked.length; ++i) {
+                    int slot = locked[i];
+                    if (cards != null)
+                        cards[i] = slotToCard[slot];
+                    clearTokensWorker(slot);
+                    unindexSetsWith(slot);
+                    int card = slotToCard[slot];
+                    if (card != NONE) {
+                        cardToSlot[card] = NONE;
+                        slotToCard[slot] = NONE;
+                        retireSetsOf(card);
+                        env.journal.record(GameJournal.CARD_REMOVED, slot, card, 0);
+                    }
+                }
+                env.ui.removeCards(locked);
+            } finally {
+                unlockSlots(locked, stamps);
+            }
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.cardsRemoved(event, locked, cards);
+        }
+    }
 
-        env.ui.removeCard(slot);
-        return card;
+    /**
+     * Returns all the cards on the table to the deck and shuffles it, as a single change: all the tokens are cleared
+     * and the set index is emptied once, and the user interface gets a single update.
+     */
+    public void returnAllCardsToDeck() {
+        Object event = GameEvents.beginReshuffle();
+        long waitStart = System.nanoTime();
+        synchronized (cardsLock) {
+            long holdStart = cardsLocked(waitStart);
+            int count = 0;
+            for (int card : slotToCard)
+                if (card != NONE)
+                    ++count;
+            int[] slots = new int[count];
+            for (int slot = 0, next = 0; slot < slotToCard.length; ++slot)
+                if (slotToCard[slot] != NONE)
+                    slots[next++] = slot;
+
+            long[] stamps = lockSlots(slots);
+            try {
+                // tokens are only ever placed on slots with cards, and those are all locked
+                for (int i = 0; i < playerTokens.length(); ++i)
+                    playerTokens.set(i, 0);
+                env.journal.record(GameJournal.TOKENS_CLEARED, 0, 0, 0);
+                tableSets.clear();
+                Arrays.fill(slotSets, 0);
+                for (int slot : slots) {
+                    int card = slotToCard[slot];
+                    cardToSlot[card] = NONE;
+                    slotToCard[slot] = NONE;
+                    deck.add(card);
+                    env.journal.record(GameJournal.CARD_RETURNED, slot, card, 0);
+                }
+                deck.shuffle();
+                env.journal.record(GameJournal.DECK_SHUFFLED, 0, 0, 0);
+
+                env.ui.removeTokens();
+                env.ui.removeCards(slots);
+            } finally {
+                unlockSlots(slots, stamps);
+            }
+            cardsChanged();
+            cardsUnlocking(holdStart);
+            GameEvents.reshuffled(event, count);
+        }
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Registers a listener to be called after every change to the cards on the table. Listeners are called while the
+     * table is locked, so they should only hand the event over (e.g. wake a thread or submit a task).
      *
-     * @param slot - the slot from which to remove the card.
+     * @param listener - the listener.
+     */
+    public void addCardsListener(Runnable listener) {
+        cardsListeners.add(listener);
+    }
+
+    private void cardsChanged() {
+        for (Runnable listener : cardsListeners)
+            listener.run();
+    }
+
+    /**
+     * Records the time a change to the cards waited for cardsLock (called right after taking it).
+     *
+     * @param waitStart - the time the change started waiting (System.nanoTime).
+     * @return - the time the lock was taken.
+     */
+    private static long cardsLocked(long waitStart) {
+        long now = System.nanoTime();
+        Metrics.TABLE_LOCK_WAIT.record(now - waitStart);
+        return now;
+    }
+
+    /**
+     * Records the time a change to the cards held cardsLock (called right before releasing it; a change that fails
+     * with an exception is not recorded).
+     *
+     * @param holdStart - the time the lock was taken.
+     */
+    private static void cardsUnlocking(long holdStart) {
+        Metrics.TABLE_LOCK_HOLD.record(System.nanoTime() - holdStart);
+    }
+
+    /**
+     * Returns a sorted copy of slots, checking they are all legal and distinct.
+     */
+    private int[] sortedSlots(int[] slots) {
+        int[] sorted = slots.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; ++i)
+            if (sorted[i] < 0 || !legalSlot(sorted[i]) || (i > 0 && sorted[i] == sorted[i - 1]))
+                throw new RuntimeException("Table: illegal or repeated slot " + sorted[i]);
+        return sorted;
+    }
+
+    /**
+     * Write-locks some slots, always in ascending order so batches never deadlock each other.
+     *
+     * @param slots - the slots to lock, sorted and distinct.
+     * @return - the stamps to unlock them with.
+     */
+    private long[] lockSlots(int[] slots) {
+        long[] stamps = new long[slots.length];
+        for (int i = 0; i < slots.length; ++i)
+            stamps[i] = slotLocks[slots[i]].writeLock();
+        return stamps;
+    }
+
+    private void unlockSlots(int[] slots, long[] stamps) {
+        for (int i = slots.length - 1; i >= 0; --i)
+            slotLocks[slots[i]].unlockWrite(stamps[i]);
+    }
+
+    // must be called holding the slot's write lock (other slots sharing the words may still change concurrently)
+    private void clearTokensWorker(int slot) {
+        boolean removed = false;
+        long bit = tokenBit(slot);
+        for (int player = 0; player < env.config.players; ++player) {
+            int word = tokenWord(player, slot);
+            if ((playerTokens.get(word) & bit) != 0) { // the bit of a write-locked slot cannot change
+                // recorded before the token is gone, so the journal never shows a token placed in its room first
+                env.journal.record(GameJournal.TOKEN_REMOVED, player, slot, slotToCard[slot]);
+                playerTokens.getAndUpdate(word, tokens -> tokens & ~bit);
+                removed = true;
+            }
+        }
+        if (removed)
+            env.ui.removeTokens(slot);
+    }
+
+    /**
+     * Marks all the sets of a card that left the game as gone.
+     *
+     * @param card - the card removed from the game.
      */
-    public synchronized void removeCard(int slot) {
-        removeCardWorker(slot);
+    private void retireSetsOf(int card) {
+        if (setIndex == null)
+            return;
+        for (int i = 0; i < setIndex.setsOfCardCount(card); ++i) {
+            int set = setIndex.setOfCard(card, i);
+            if (!setsGone.get(set)) {
+                setsGone.set(set);
+                --availableSets;
+            }
+        }
     }
 
-    public synchronized boolean token(int player, int slot) {
-        if (!tokenLegalSlot(slot))
+    /**
+     * Count the legal sets that can still be collected in this game (i.e. all their cards are in the deck or on the
+     * table). Without a set index, the cards are searched for a single set instead.
+     *
+     * @return - the number of legal sets left in the game (0 or 1 without a set index).
+     */
+    public int availableSets() {
+        List<Integer> cards = new ArrayList<>();
+        synchronized (cardsLock) {
+            if (setIndex != null)
+                return availableSets;
+            for (int i = 0; i < deck.size(); ++i)
+                cards.add(deck.card(i));
+            for (int card : slotToCard)
+                if (card != NONE)
+                    cards.add(card);
+        }
+        return env.util.findSets(cards, 1).size();
+    }
+
+    /**
+     * Places a player token on a grid slot if there is none, removes it otherwise.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot on which to toggle the token.
+     * @return - true iff a token was placed or removed.
+     */
+    public boolean token(int player, int slot) {
+        if (!legalSlot(slot))
             return false;
 
-        if (playerTokens[player].contains(slot))
-            return removeToken(player, slot);
-        else {
-            int tokens = tokenAmount(player);
-            placeToken(player, slot);
-            return tokenAmount(player) > tokens;
+        long stamp = slotLocks[slot].readLock();
+        try {
+            if (slotToCard[slot] == NONE)
+                return false;
+
+            if ((playerTokens.get(tokenWord(player, slot)) & tokenBit(slot)) != 0)
+                return removeTokenWorker(player, slot);
+            else
+                return placeTokenWorker(player, slot);
+        } finally {
+            slotLocks[slot].unlockRead(stamp);
         }
     }
 
@@ -193,26 +736,45 @@ public class Table {
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    public synchronized void placeToken(int player, int slot) {
-        if (!tokenLegalSlot(slot))
-            return;
-
-        if (tokenAmount(player) >= env.config.featureSize)
+    public void placeToken(int player, int slot) {
+        if (!legalSlot(slot))
             return;
 
-        if (playerTokens[player].contains(slot))
-            return;
+        long stamp = slotLocks[slot].readLock();
+        try {
+            if (slotToCard[slot] != NONE)
+                placeTokenWorker(player, slot);
+        } finally {
+            slotLocks[slot].unlockRead(stamp);
+        }
+    }
 
-        playerTokens[player].add(slot);
+    // must be called holding the slot's lock, when there is a card in the slot. The event is recorded after the CAS, so
+    // it is in order with the player's own events and the card changes of the slot, not with other players' tokens
+    private boolean placeTokenWorker(int player, int slot) {
+        int word = tokenWord(player, slot);
+        long bit = tokenBit(slot);
+        long tokens;
+        do {
+            tokens = playerTokens.get(word);
+            if ((tokens & bit) != 0 || tokenAmount(player) >= env.config.featureSize)
+                return false;
+        } while (!playerTokens.compareAndSet(word, tokens, tokens | bit));
+
+        env.journal.record(GameJournal.TOKEN_PLACED, player, slot, slotToCard[slot]);
         env.ui.placeToken(player, slot);
+        return true;
     }
 
-    // a tokenLegalSlot is a legalSlot that has a card.
-    private synchronized boolean tokenLegalSlot(int slot) {
-        return legalSlot(slot) && slotToCard[slot] != null;
+    private int tokenWord(int player, int slot) {
+        return player * tokenWords + slot / Long.SIZE;
     }
 
-    private synchronized boolean legalSlot(int slot) {
+    private static long tokenBit(int slot) {
+        return 1L << (slot % Long.SIZE);
+    }
+
+    private boolean legalSlot(int slot) {
         return slot < slotToCard.length;
     }
 
@@ -223,40 +785,92 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return - true iff a token was successfully removed.
      */
-    public synchronized boolean removeToken(int player, int slot) {
-        if (!tokenLegalSlot(slot))
-            return false;
-
-        if (tokenAmount(player) <= 0)
+    public boolean removeToken(int player, int slot) {
+        if (!legalSlot(slot))
             return false;
 
-        if (playerTokens[player].contains(slot)) {
-            playerTokens[player].remove((Integer) slot);
-            env.ui.removeToken(player, slot);
-            return true;
+        long stamp = slotLocks[slot].readLock();
+        try {
+            return slotToCard[slot] != NONE && removeTokenWorker(player, slot);
+        } finally {
+            slotLocks[slot].unlockRead(stamp);
         }
+    }
+
+    // must be called holding the slot's lock (so only the player's own thread can change the player's token on it)
+    private boolean removeTokenWorker(int player, int slot) {
+        int word = tokenWord(player, slot);
+        long bit = tokenBit(slot);
+        if ((playerTokens.get(word) & bit) == 0)
+            return false;
 
-        return false;
+        // recorded before the token is gone, so the journal never shows a token placed in its room first
+        env.journal.record(GameJournal.TOKEN_REMOVED, player, slot, slotToCard[slot]);
+        playerTokens.getAndUpdate(word, tokens -> tokens & ~bit);
+        env.ui.removeToken(player, slot);
+        return true;
     }
 
-    public synchronized int tokenAmount(int player) {
-        return playerTokens[player].size();
+    /**
+     * Checks whether a player has a token on a slot.
+     *
+     * @param player - the player.
+     * @param slot   - the slot.
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return legalSlot(slot) && (playerTokens.get(tokenWord(player, slot)) & tokenBit(slot)) != 0;
+    }
 
+    public int tokenAmount(int player) {
+        int tokens = 0;
+        for (int i = 0; i < tokenWords; ++i)
+            tokens += Long.bitCount(playerTokens.get(player * tokenWords + i));
+        return tokens;
     }
 
-    public synchronized boolean deckEmpty() {
-        return deck.isEmpty();
+    public boolean deckEmpty() {
+        synchronized (cardsLock) {
+            return deck.isEmpty();
+        }
     }
 
-    public synchronized Vector<Integer> getPlayerTokens(int player) {
-        return playerTokens[player];
+    /**
+     * Returns the slots a player has tokens on.
+     *
+     * @param player - the player.
+     * @return - a new array of the slots, in ascending order.
+     */
+    public int[] getPlayerTokens(int player) {
+        long[] words = new long[tokenWords];
+        int tokens = 0;
+        for (int i = 0; i < tokenWords; ++i) {
+            words[i] = playerTokens.get(player * tokenWords + i);
+            tokens += Long.bitCount(words[i]);
+        }
+
+        int[] slots = new int[tokens];
+        for (int i = 0, next = 0; i < tokenWords; ++i)
+            for (long word = words[i]; word != 0; word &= word - 1)
+                slots[next++] = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+        return slots;
     }
 
-    public synchronized List<Integer> getDeck() {
-        return deck;
+    /**
+     * Count the number of cards left in the deck.
+     *
+     * @return - the number of cards in the deck.
+     */
+    public int deckSize() {
+        synchronized (cardsLock) {
+            return deck.size();
+        }
     }
 
-    public synchronized void shuffle() {
-        Collections.shuffle(deck);
+    public void shuffle() {
+        synchronized (cardsLock) {
+            deck.shuffle();
+            env.journal.record(GameJournal.DECK_SHUFFLED, 0, 0, 0);
+        }
     }
 }
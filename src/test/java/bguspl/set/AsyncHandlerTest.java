@@ -0,0 +1,86 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncHandlerTest {
+
+    /**
+     * Collects the formatted records, optionally waiting for a gate before the first one.
+     */
+    static class CollectingHandler extends Handler {
+        final List<String> written = new ArrayList<>();
+        final CountDownLatch gate;
+
+        CollectingHandler(CountDownLatch gate) {
+            this.gate = gate;
+            setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return formatMessage(record);
+                }
+            });
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+            written.add(getFormatter().format(record));
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static LogRecord record(int i) {
+        LogRecord record = new LogRecord(Level.SEVERE, "record {0,number,#}");
+        record.setParameters(new Object[]{i});
+        return record;
+    }
+
+    @Test
+    void flush_WritesAllRecordsInOrder() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncHandler handler = new AsyncHandler(target, 16, AsyncHandler.Overflow.BLOCK);
+        for (int i = 0; i < 1000; ++i)
+            handler.publish(record(i));
+        handler.flush();
+
+        assertEquals(1000, target.written.size());
+        for (int i = 0; i < 1000; ++i)
+            assertEquals("record " + i, target.written.get(i));
+        assertEquals(0, handler.dropped());
+        handler.close();
+    }
+
+    @Test
+    void publish_DropsAndReportsWhenTheBufferIsFull() {
+        CountDownLatch gate = new CountDownLatch(1);
+        CollectingHandler target = new CollectingHandler(gate);
+        AsyncHandler handler = new AsyncHandler(target, 4, AsyncHandler.Overflow.DROP);
+        for (int i = 0; i < 100; ++i)
+            handler.publish(record(i)); // never blocks, the writer is stuck on the first record
+        assertTrue(handler.dropped() >= 100 - 4 - 1);
+
+        gate.countDown();
+        handler.flush();
+        assertTrue(target.written.contains(handler.dropped() + " log records were dropped (buffer full)"));
+        handler.close();
+    }
+}
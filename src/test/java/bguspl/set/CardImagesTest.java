@@ -0,0 +1,45 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static bguspl.set.TestConfigs.config;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardImagesTest {
+
+    @Test
+    void capacity_AtLeastTwiceTheTableSize() {
+        Config config = config("CardImageCacheMegabytes", "0");
+        assertEquals(2 * config.tableSize, CardImages.capacity(config));
+        assertEquals(1024 * 1024 * 64 / (config.cellWidth * config.cellHeight * 4),
+                CardImages.capacity(config("CardImageCacheMegabytes", "64")));
+    }
+
+    @Test
+    void request_LoadsEveryCardWithinTheCapacity() throws InterruptedException {
+        Config config = config("CardImageCacheMegabytes", "0");
+        Set<Integer> loaded = ConcurrentHashMap.newKeySet();
+        CardImages images = new CardImages(Logger.getLogger("CardImagesTest"), config, loaded::add);
+        try {
+            assertNotNull(images.empty());
+            for (int card = 0; card < config.deckSize; ++card)
+                images.request(card);
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (loaded.size() < config.deckSize && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(config.deckSize, loaded.size());
+            assertTrue(images.size() <= CardImages.capacity(config));
+
+            // the most recently loaded images are kept (at most capacity - 1 prefetched ones are loaded after it)
+            assertNotNull(images.get(config.deckSize - 1));
+            assertEquals(config.cellWidth, images.get(config.deckSize - 1).getWidth(null));
+        } finally {
+            images.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static bguspl.set.TestConfigs.features;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FeatureTableTest {
+
+    @Test
+    void feature_MatchesDecodingTheCardId() {
+        Config config = features(4, 3);
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = config.featureCount - 1, id = card; i >= 0; --i, id /= config.featureSize)
+                assertEquals(id % config.featureSize, config.featureTable.feature(card, i));
+    }
+
+    @Test
+    void appendName_MatchesCardImageNames() {
+        Config config = features(4, 3);
+        assertEquals("0000", config.featureTable.appendName(0, new StringBuilder()).toString());
+        assertEquals("0212", config.featureTable.appendName(23, new StringBuilder()).toString());
+        assertEquals("2222", config.featureTable.appendName(80, new StringBuilder()).toString());
+    }
+
+    @Test
+    void completeSet_CompletesToLegalSets() {
+        Config config = features(4, 3);
+        Util util = new UtilImpl(config);
+        int[] cards = new int[3];
+        for (cards[0] = 0; cards[0] < config.deckSize; ++cards[0])
+            for (cards[1] = cards[0] + 1; cards[1] < config.deckSize; ++cards[1]) {
+                cards[2] = config.featureTable.completeSet(cards, 2);
+                assertTrue(util.testSet(cards));
+            }
+    }
+
+    @Test
+    void findSets_FeaturesTooLargeToCompleteAreSearched() {
+        Config config = features(2, 40); // 40 values per feature are more than completeSet supports
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        assertEquals(new UtilImpl(config).findSets(deck, 1).size(), new UtilPairCompletion(config).findSets(deck, 1).size());
+        assertEquals(0, new UtilBitSliced(config).findSets(deck.subList(0, 39), 1).size());
+        assertEquals(1, new UtilBitSliced(config).findSets(deck.subList(0, 40), 1).size()); // the first feature is 0
+    }
+
+    @Test
+    void testSet_DoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Config config = features(4, 3);
+        Util util = new UtilImpl(config);
+        int[] set = {0, 1, 2};
+        int calls = 100_000;
+        boolean found = false;
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; ++i) {
+            set[2] = i % config.deckSize;
+            found |= util.testSet(set);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(found);
+        // allow for the measurement itself, but not for a single allocation per call
+        assertTrue(allocated < calls, "testSet allocated " + allocated + " bytes in " + calls + " calls");
+    }
+}
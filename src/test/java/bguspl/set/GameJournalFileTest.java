@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalFileTest {
+
+    @TempDir
+    Path directory;
+
+    private final Logger logger = Logger.getLogger("GameJournalFileTest");
+    private final Config config = new Config(logger, new Properties());
+
+    @Test
+    void close_WritesTheHeaderAndTheRecordsInOrder() throws IOException {
+        GameJournal journal = new GameJournalFile(logger, config, directory, "game", 1 << 20);
+        for (int i = 0; i < 10000; ++i)
+            journal.record(i, GameJournal.TOKEN_PLACED, i % 4, i % 12, i);
+        journal.close();
+        journal.record(GameJournal.GAME_END, 0, 0, 0); // ignored once closed
+
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(GameJournalFile.file(directory, "game", 0)));
+        assertEquals(GameJournalFile.HEADER_SIZE + 10000 * GameJournal.RECORD_SIZE, file.limit());
+        assertEquals(GameJournalFile.MAGIC, file.getInt());
+        assertEquals(GameJournalFile.VERSION, file.getInt());
+        assertEquals(0, file.getInt());
+        assertEquals(config.featureCount, file.getInt());
+        assertEquals(config.featureSize, file.getInt());
+        assertEquals(config.tableSize, file.getInt());
+        assertEquals(config.players, file.getInt());
+        file.position(GameJournalFile.HEADER_SIZE);
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i, file.getLong());
+            assertEquals(GameJournal.TOKEN_PLACED, file.getInt());
+            assertEquals(i % 4, file.getInt());
+            assertEquals(i % 12, file.getInt());
+            assertEquals(i, file.getInt());
+        }
+    }
+
+    @Test
+    void record_RollsToTheNextFileAtTheMaximumSize() throws IOException {
+        GameJournal journal = new GameJournalFile(logger, config, directory, "game", 1);
+        int records = 10000; // fills the buffer more than once
+        for (int i = 0; i < records; ++i)
+            journal.record(i, GameJournal.CARD_PLACED, i, i, 0);
+        journal.close();
+
+        long total = 0;
+        int files = 0;
+        for (Path file = GameJournalFile.file(directory, "game", 0); Files.exists(file);
+             file = GameJournalFile.file(directory, "game", ++files)) {
+            long size = Files.size(file);
+            assertEquals(0, (size - GameJournalFile.HEADER_SIZE) % GameJournal.RECORD_SIZE);
+            total += size - GameJournalFile.HEADER_SIZE;
+        }
+        assertTrue(files > 1);
+        assertEquals((long) records * GameJournal.RECORD_SIZE, total);
+        assertFalse(Files.exists(GameJournalFile.file(directory, "game", files)));
+    }
+}
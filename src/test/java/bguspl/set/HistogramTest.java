@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void bucket_ValuesFallBetweenTheBucketBounds() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; ++i) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(Long.SIZE - 1);
+            int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.lowestValue(bucket) <= value);
+            if (value < Long.MAX_VALUE / 2)
+                assertTrue(value < Histogram.lowestValue(bucket + 1));
+        }
+        assertTrue(Histogram.lowestValue(Histogram.bucket(Long.MAX_VALUE)) > Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    void percentile_WithinTheBucketResolution() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; ++value)
+            histogram.record(value);
+
+        assertEquals(100000, histogram.count());
+        assertEquals(50000, histogram.mean());
+        assertEquals(100000, histogram.max());
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            long expected = (long) (quantile * 100000);
+            long actual = histogram.percentile(quantile);
+            assertTrue(actual >= expected && actual <= expected + expected / 8, quantile + ": " + actual);
+        }
+        assertEquals(0, new Histogram().percentile(0.5));
+    }
+
+    @Test
+    void record_ConcurrentRecordsAreAllCounted() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            long offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; ++i)
+                    histogram.record(i % 1000 + offset);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(400000, histogram.count());
+        assertEquals(1002, histogram.max());
+    }
+}
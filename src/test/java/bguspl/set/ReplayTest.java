@@ -0,0 +1,74 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayTest {
+
+    @TempDir
+    Path directory;
+
+    private final Logger logger = Logger.getLogger("ReplayTest");
+
+    /**
+     * Plays a full game of computer players at maximum speed, recorded in a journal.
+     */
+    private List<ByteBuffer> recordGame() throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "4");
+        Simulation.turbo(properties);
+        Config config = new Config(logger, properties);
+        GameJournal journal = new GameJournalFile(logger, config, directory, "game", 1 << 16);
+        Game game = new Game(new Env(logger, config, new UserInterfaceNoOp(), Main.createUtil(logger, config), journal));
+
+        Thread dealer = new Thread(game.dealer);
+        dealer.start();
+        dealer.join();
+        journal.close();
+        return Replay.read(GameJournalFile.file(directory, "game", 0));
+    }
+
+    private Replay replay(List<ByteBuffer> files) throws IOException {
+        Config config = Replay.config(logger, files.get(0), null);
+        Replay replay = new Replay(new Env(logger, config, new UserInterfaceNoOp(), Main.createUtil(logger, config)));
+        for (ByteBuffer file : files)
+            replay.replay(file);
+        return replay;
+    }
+
+    @Test
+    void replay_RecordedGameMatches() throws IOException, InterruptedException {
+        List<ByteBuffer> files = recordGame();
+        assertTrue(files.size() > 1);
+
+        Replay replay = replay(files);
+        assertEquals(1, replay.games());
+        assertTrue(replay.events() > 100);
+        assertEquals(0, replay.mismatches(), () -> String.join("\n", replay.shownMismatches()));
+    }
+
+    @Test
+    void replay_TamperedVerdictIsReported() throws IOException, InterruptedException {
+        List<ByteBuffer> files = recordGame();
+        tamper:
+        for (ByteBuffer file : files) // the first point may be in any of the files
+            for (int at = GameJournalFile.HEADER_SIZE + Long.BYTES; at < file.limit(); at += GameJournal.RECORD_SIZE)
+                if (file.getInt(at) == GameJournal.POINT) {
+                    file.putInt(at, GameJournal.PENALTY);
+                    break tamper;
+                }
+
+        Replay replay = replay(files);
+        assertTrue(replay.mismatches() > 0);
+    }
+}
@@ -0,0 +1,50 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static bguspl.set.TestConfigs.features;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetIndexTest {
+
+    @Test
+    void forConfig_SharedBetweenConfigs() {
+        assertSame(SetIndex.forConfig(features(4, 3)), SetIndex.forConfig(features(4, 3)));
+    }
+
+    @Test
+    void forConfig_ContainsAllTheSetsOfTheDeck() {
+        for (int[] layout : new int[][]{{4, 3}, {3, 4}, {3, 2}}) {
+            Config config = features(layout[0], layout[1]);
+            SetIndex index = SetIndex.forConfig(config);
+            List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+            List<int[]> sets = new UtilImpl(config).findSets(deck, Integer.MAX_VALUE);
+
+            assertEquals(sets.size(), index.setCount);
+            for (int set = 0; set < index.setCount; ++set) {
+                int[] cards = new int[index.setSize];
+                for (int i = 0; i < index.setSize; ++i)
+                    cards[i] = index.card(set, i);
+                assertArrayEquals(sets.get(set), cards);
+            }
+
+            int memberships = 0;
+            for (int card = 0; card < config.deckSize; ++card)
+                for (int i = 0; i < index.setsOfCardCount(card); ++i, ++memberships) {
+                    int set = index.setOfCard(card, i);
+                    boolean member = false;
+                    for (int j = 0; j < index.setSize; ++j)
+                        member |= index.card(set, j) == card;
+                    assertTrue(member);
+                }
+            assertEquals(index.setCount * index.setSize, memberships);
+        }
+    }
+}
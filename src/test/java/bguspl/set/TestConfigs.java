@@ -0,0 +1,49 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The configurations the tests run with: the defaults, with some properties overridden and logging off.
+ */
+public final class TestConfigs {
+
+    private TestConfigs() {
+    }
+
+    /**
+     * Returns the default configuration with some properties overridden.
+     *
+     * @param properties - the names and values of the properties, alternately.
+     * @return - the configuration.
+     */
+    public static Config config(String... properties) {
+        return config(Logger.getAnonymousLogger(), properties);
+    }
+
+    /**
+     * Returns the default configuration with some properties overridden, turning off the logging of a logger.
+     *
+     * @param logger     - the logger of the test.
+     * @param properties - the names and values of the properties, alternately.
+     * @return - the configuration.
+     */
+    public static Config config(Logger logger, String... properties) {
+        Properties overrides = new Properties();
+        overrides.setProperty("LogLevel", "OFF");
+        for (int i = 0; i < properties.length; i += 2)
+            overrides.setProperty(properties[i], properties[i + 1]);
+        return new Config(logger, overrides);
+    }
+
+    /**
+     * Returns the default configuration with another feature layout.
+     *
+     * @param featureCount - the number of features.
+     * @param featureSize  - the number of values of every feature.
+     * @return - the configuration.
+     */
+    public static Config features(int featureCount, int featureSize) {
+        return config("FeatureCount", Integer.toString(featureCount), "FeatureSize", Integer.toString(featureSize));
+    }
+}
@@ -0,0 +1,46 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class UserInterfaceAnimatorTest {
+
+    @Test
+    void cardEvents_ReturnImmediatelyAndAreShownInOrder() {
+        UserInterface ui = mock(UserInterface.class);
+        UserInterfaceAnimator animator = new UserInterfaceAnimator(ui, 50);
+
+        long start = System.nanoTime();
+        for (int slot = 0; slot < 12; ++slot)
+            animator.placeCard(slot, slot);
+        animator.removeCard(11);
+        animator.dispose();
+        assertTrue(System.nanoTime() - start < 50_000_000L);
+
+        InOrder inOrder = inOrder(ui);
+        for (int slot = 0; slot < 12; ++slot)
+            inOrder.verify(ui, timeout(5000)).placeCard(slot, slot);
+        inOrder.verify(ui, timeout(5000)).removeCard(11);
+        inOrder.verify(ui, timeout(5000)).dispose();
+    }
+
+    @Test
+    void otherEvents_DoNotWaitForTheCards() {
+        UserInterface ui = mock(UserInterface.class);
+        UserInterfaceAnimator animator = new UserInterfaceAnimator(ui, 1000);
+
+        for (int slot = 0; slot < 12; ++slot)
+            animator.placeCard(slot, slot);
+        animator.placeToken(0, 0);
+        animator.setCountdown(5000, false);
+        animator.setFreeze(1, 3000);
+
+        verify(ui).placeToken(0, 0);
+        verify(ui).setCountdown(5000, false);
+        verify(ui).setFreeze(1, 3000);
+        verify(ui, never()).placeCard(anyInt(), anyInt());
+    }
+}
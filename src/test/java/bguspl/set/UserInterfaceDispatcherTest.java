@@ -0,0 +1,58 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+
+import static bguspl.set.TestConfigs.config;
+import static org.mockito.Mockito.*;
+
+class UserInterfaceDispatcherTest {
+
+    @Test
+    void updates_SupersededValuesAreDropped() {
+        UserInterface ui = mock(UserInterface.class);
+        UserInterfaceDispatcher dispatcher = new UserInterfaceDispatcher(ui, config("MaxFps", "2"));
+        dispatcher.setElapsed(0); // the first frame, so the next one is half a second later
+        verify(ui, timeout(5000)).setElapsed(0);
+
+        for (int millis = 1000; millis >= 0; --millis)
+            dispatcher.setCountdown(millis, millis < 500);
+        for (int score = 1; score <= 100; ++score)
+            dispatcher.setScore(1, score);
+        dispatcher.placeCard(7, 3);
+        dispatcher.removeCard(3);
+        dispatcher.placeCard(8, 3);
+        dispatcher.placeToken(0, 3);
+        dispatcher.placeToken(1, 3);
+        dispatcher.removeToken(0, 3);
+        dispatcher.dispose();
+
+        InOrder inOrder = inOrder(ui);
+        inOrder.verify(ui, timeout(5000)).setCountdown(0, true);
+        inOrder.verify(ui, timeout(5000)).dispose();
+        verify(ui, times(1)).setCountdown(anyLong(), anyBoolean());
+        verify(ui, times(1)).setScore(eq(1), anyInt());
+        verify(ui).setScore(1, 100);
+        verify(ui, never()).placeCards(new int[]{7}, new int[]{3});
+        verify(ui).placeCards(new int[]{8}, new int[]{3});
+        verify(ui, atLeastOnce()).placeToken(1, 3);
+        verify(ui, never()).setScore(eq(0), anyInt());
+    }
+
+    @Test
+    void updates_AppliedOnTheEventThread() {
+        UserInterface ui = mock(UserInterface.class);
+        doAnswer(invocation -> {
+            if (!java.awt.EventQueue.isDispatchThread())
+                throw new AssertionError("not on the event dispatch thread");
+            return null;
+        }).when(ui).setElapsed(anyLong());
+        UserInterfaceDispatcher dispatcher = new UserInterfaceDispatcher(ui, config("MaxFps", "0"));
+
+        dispatcher.setElapsed(42);
+        verify(ui, timeout(5000)).setElapsed(42);
+        dispatcher.setElapsed(43);
+        verify(ui, timeout(5000)).setElapsed(43);
+    }
+}
@@ -0,0 +1,103 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static bguspl.set.TestConfigs.features;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UtilBitSlicedTest {
+
+    /**
+     * The largest deck (in features) to build: the feature table and the codes of all the cards are kept in memory.
+     * This covers 246 of the 280 layouts that fit in a long; the rest have decks of over 2^25 features, 15 of them of
+     * over Integer.MAX_VALUE, which Config cannot build a feature table for at all.
+     */
+    private static final long MAX_DECK_FEATURES = 1L << 25;
+
+    private static int card(int[] features, int featureSize) {
+        int card = 0;
+        for (int feature : features)
+            card = card * featureSize + feature;
+        return card;
+    }
+
+    /**
+     * Returns n cards with every feature either sameSame or butDifferent (a legal set, for n > 1).
+     */
+    private static int[] legalSet(Random random, int featureCount, int featureSize, int n) {
+        int[][] features = new int[n][featureCount];
+        for (int i = 0; i < featureCount; ++i) {
+            if (random.nextBoolean()) {
+                int value = random.nextInt(featureSize);
+                for (int j = 0; j < n; ++j)
+                    features[j][i] = value;
+            } else {
+                int[] values = new int[featureSize];
+                for (int v = 0; v < featureSize; ++v)
+                    values[v] = v;
+                for (int j = 0; j < n; ++j) { // the first n values of a random permutation
+                    int k = j + random.nextInt(featureSize - j);
+                    int t = values[j];
+                    values[j] = values[k];
+                    values[k] = t;
+                    features[j][i] = values[j];
+                }
+            }
+        }
+        int[] cards = new int[n];
+        for (int j = 0; j < n; ++j)
+            cards[j] = card(features[j], featureSize);
+        return cards;
+    }
+
+    private static void assertSameAsCombinations(Util expected, Util actual, int[] cards) {
+        assertEquals(expected.testSet(cards), actual.testSet(cards), () -> Arrays.toString(cards));
+    }
+
+    @Test
+    void testSet_SameAsCombinationsForEveryFeatureLayoutThatFits() {
+        Random random = new Random(2025);
+        int layouts = 0;
+        for (int featureSize = 1; featureSize <= Long.SIZE; ++featureSize)
+            for (int featureCount = 1; featureCount * featureSize <= Long.SIZE; ++featureCount) {
+                if (Math.pow(featureSize, featureCount) * featureCount > MAX_DECK_FEATURES)
+                    break;
+                Config config = features(featureCount, featureSize);
+                Util combinations = new UtilImpl(config);
+                Util bitSliced = new UtilBitSliced(config);
+                layouts++;
+
+                // small decks: every combination of up to featureSize + 1 cards (with repetitions)
+                if (config.deckSize <= 9)
+                    for (int n = 0; n <= featureSize + 1 && Math.pow(config.deckSize, n) <= 10000; ++n) {
+                        int[] cards = new int[n];
+                        for (int combination = 0; combination < Math.pow(config.deckSize, n); ++combination) {
+                            for (int j = 0, c = combination; j < n; ++j, c /= config.deckSize)
+                                cards[j] = c % config.deckSize;
+                            assertSameAsCombinations(combinations, bitSliced, cards);
+                        }
+                    }
+
+                for (int i = 0; i < 2000; ++i) {
+                    // legal sets of every size, and the same sets with one feature of one card changed
+                    int n = 1 + random.nextInt(featureSize);
+                    int[] cards = legalSet(random, featureCount, featureSize, n);
+                    assertSameAsCombinations(combinations, bitSliced, cards);
+                    int[] features = combinations.cardToFeatures(cards[0]);
+                    features[random.nextInt(featureCount)] = random.nextInt(featureSize);
+                    cards[0] = card(features, featureSize);
+                    assertSameAsCombinations(combinations, bitSliced, cards);
+
+                    // random cards
+                    int[] randomCards = new int[random.nextInt(featureSize + 2)];
+                    for (int j = 0; j < randomCards.length; ++j)
+                        randomCards[j] = random.nextInt(config.deckSize);
+                    assertSameAsCombinations(combinations, bitSliced, randomCards);
+                }
+            }
+        assertEquals(246, layouts);
+    }
+}
@@ -0,0 +1,51 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static bguspl.set.TestConfigs.features;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UtilPairCompletionTest {
+
+    private static void assertSameSets(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertArrayEquals(expected.get(i), actual.get(i));
+    }
+
+    private static void assertSameAsCombinations(Config config, List<Integer> deck) {
+        Util combinations = new UtilImpl(config);
+        Util pairCompletion = new UtilPairCompletion(config);
+        for (int count : new int[]{1, 2, 7, Integer.MAX_VALUE})
+            assertSameSets(combinations.findSets(deck, count), pairCompletion.findSets(deck, count));
+    }
+
+    @Test
+    void findSets_WholeDeck() {
+        Config config = features(4, 3);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        assertSameAsCombinations(config, deck);
+        assertEquals(1080, new UtilPairCompletion(config).findSets(deck, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_ShuffledPartialDecks() {
+        Random random = new Random(2024);
+        for (int[] features : new int[][]{{4, 3}, {3, 3}, {3, 4}, {2, 5}, {3, 2}}) {
+            Config config = features(features[0], features[1]);
+            for (int size = 0; size <= Math.min(config.deckSize, 30); ++size) {
+                List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toCollection(ArrayList::new));
+                Collections.shuffle(deck, random);
+                assertSameAsCombinations(config, deck.subList(0, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    @Test
+    void newDeck_ContainsAllTheCards() {
+        Deck deck = new Deck(81, new Random(7));
+        Set<Integer> drawn = new HashSet<>();
+        while (!deck.isEmpty())
+            assertTrue(drawn.add(deck.draw()));
+        assertEquals(81, drawn.size());
+    }
+
+    @Test
+    void randomOperations_MatchASet() {
+        Random random = new Random(7);
+        Deck deck = new Deck(81, random);
+        Set<Integer> expected = new HashSet<>();
+        for (int card = 0; card < 81; ++card)
+            expected.add(card);
+
+        for (int i = 0; i < 10_000; ++i) {
+            int card = random.nextInt(81);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.remove(card), deck.remove(card));
+                    break;
+                case 1:
+                    if (!expected.contains(card)) {
+                        deck.add(card);
+                        expected.add(card);
+                    }
+                    break;
+                case 2:
+                    if (!deck.isEmpty()) {
+                        int top = deck.peek();
+                        assertEquals(top, deck.draw());
+                        assertTrue(expected.remove(top));
+                    }
+                    break;
+                default:
+                    deck.shuffle();
+            }
+            assertEquals(expected.size(), deck.size());
+            assertEquals(expected.contains(card), deck.contains(card));
+        }
+        for (int card = 0; card < 81; ++card)
+            assertEquals(expected.contains(card), deck.contains(card));
+        assertFalse(deck.size() > 81);
+    }
+}
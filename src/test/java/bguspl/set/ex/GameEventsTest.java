@@ -0,0 +1,84 @@
+package bguspl.set.ex;
+
+import bguspl.set.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static bguspl.set.TestConfigs.config;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameEventsTest {
+
+    @TempDir
+    Path directory;
+
+    private static long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).count();
+    }
+
+    @Test
+    void game_EmitsTheEnabledEvents() throws IOException, InterruptedException {
+        Logger logger = Logger.getLogger("GameEventsTest");
+        Config config = config(logger, "HumanPlayers", "0", "ComputerPlayers", "4",
+                "ComputerReactionMinSeconds", "0", "ComputerReactionMaxSeconds", "0", "TurnTimeoutSeconds", "-1",
+                "PointFreezeSeconds", "0", "PenaltyFreezeSeconds", "0");
+        Game game = new Game(new Env(logger, config, new UserInterfaceNoOp(), Main.createUtil(logger, config)));
+
+        Path file = directory.resolve("game.jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : new String[]{"CardsPlaced", "CardsRemoved"})
+                recording.enable("bguspl.set." + event).withoutThreshold();
+            recording.start();
+            Thread dealer = new Thread(game.dealer);
+            dealer.start();
+            dealer.join();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(game.dealer.claims(), count(events, "bguspl.set.ClaimSubmitted"));
+        assertEquals(game.dealer.claims(), count(events, "bguspl.set.ClaimVerdict"));
+        long points = events.stream().filter(event -> event.getEventType().getName().equals("bguspl.set.ClaimVerdict"))
+                .filter(event -> event.getString("verdict").equals("point")).count();
+        long removals = count(events, "bguspl.set.CardsRemoved"); // once per batch of claims with points
+        assertTrue(removals > 0 && removals <= points);
+        assertTrue(count(events, "bguspl.set.CardsPlaced") > 0);
+        assertTrue(count(events, "bguspl.set.Reshuffle") > 0); // enabled by default (the game ends with a reshuffle)
+    }
+
+    @Test
+    void singleCardChanges_EmitTheCardEvents() throws IOException {
+        Logger logger = Logger.getLogger("GameEventsTest");
+        Config config = config(logger);
+        Table table = new Table(new Env(logger, config, new UserInterfaceNoOp(), Main.createUtil(logger, config)));
+
+        Path file = directory.resolve("cards.jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : new String[]{"CardsPlaced", "CardsRemoved"})
+                recording.enable("bguspl.set." + event).withoutThreshold();
+            recording.start();
+            table.placeCard(5, 0);
+            table.placeCardFromDeck(1);
+            table.removeCard(0);
+            table.removeCardAndReturnToDeck(1);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(2, count(events, "bguspl.set.CardsPlaced"));
+        assertEquals(2, count(events, "bguspl.set.CardsRemoved"));
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("bguspl.set.CardsRemoved")
+                && event.getString("slots").equals("[0]") && event.getString("cards").equals("[5]")));
+    }
+}
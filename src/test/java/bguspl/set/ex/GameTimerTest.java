@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTimerTest {
+
+    @Test
+    void untilSecondChanges_WakesExactlyWhenTheShownSecondChanges() {
+        assertEquals(1000, GameTimer.untilSecondChangesDown(5999)); // 5 is shown until 4999
+        assertEquals(1, GameTimer.untilSecondChangesDown(5000));
+        assertEquals(1000, GameTimer.untilSecondChangesUp(0));
+        assertEquals(1, GameTimer.untilSecondChangesUp(1999));
+        for (long millis = 1000; millis < 3000; ++millis) {
+            assertEquals(millis / 1000 - 1, (millis - GameTimer.untilSecondChangesDown(millis)) / 1000);
+            assertEquals(millis / 1000 + 1, (millis + GameTimer.untilSecondChangesUp(millis)) / 1000);
+        }
+    }
+
+    @Test
+    void schedule_RunsTasksUnlessCancelled() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        boolean[] cancelledRan = {false};
+        GameTimer.schedule(() -> cancelledRan[0] = true, 20).cancel(false);
+        GameTimer.schedule(ran::countDown, 40);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledRan[0]);
+    }
+}
@@ -11,11 +11,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -70,4 +74,23 @@ class PlayerTest {
         // check that ui.setScore was called with the player's id and the correct score
         verify(ui).setScore(eq(player.id), eq(expectedScore));
     }
-}
\ No newline at end of file
+
+    @Test
+    void point_ExecutorModeFreezesAndResumes() {
+        Properties properties = new Properties();
+        properties.put("PlayerExecution", "Executor");
+        properties.put("PlayerExecutorThreads", "1");
+        properties.put("PointFreezeSeconds", "0.2");
+        Env env = new Env(logger, new Config(logger, properties), ui, util);
+        Player human = new Player(env, dealer, table, 1, true);
+        human.start();
+
+        human.point();
+        assertEquals(1, human.score());
+        verify(ui, atLeastOnce()).setFreeze(eq(1), anyLong());
+        verify(ui, timeout(5000)).setFreeze(1, 0);
+
+        human.terminate();
+        human.join();
+    }
+}
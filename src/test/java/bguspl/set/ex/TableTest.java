@@ -2,22 +2,30 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.TestConfigs;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilPairCompletion;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,8 +40,10 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.NONE);
+        Arrays.fill(cardToSlot, Table.NONE);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -58,8 +68,8 @@ class TableTest {
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -95,6 +105,130 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void setOnTable_IndexUpdatedOnPlaceAndRemove() {
+        // cards 0, 1 and 2 differ only in the last feature, so they form a legal set
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        assertFalse(table.setOnTable());
+
+        table.placeCard(2, 3);
+        assertTrue(table.setOnTable());
+        assertEquals(1, table.countSets());
+        assertTrue(table.slotInSet(3));
+        assertFalse(table.slotInSet(2));
+
+        table.removeCard(1);
+        assertFalse(table.setOnTable());
+        assertEquals(0, table.countSets());
+        assertFalse(table.slotInSet(0));
+    }
+
+    @Test
+    void availableSets_DecreasesOnlyWhenCardsLeaveTheGame() {
+        // each card of a deck with 4 features of size 3 belongs to 40 of its 1080 sets
+        assertEquals(1080, table.availableSets());
+
+        table.placeCard(0, 0);
+        table.removeCardAndReturnToDeck(0);
+        assertEquals(1080, table.availableSets());
+
+        table.placeCard(0, 0);
+        table.removeCard(0);
+        assertEquals(1040, table.availableSets());
+    }
+
+    @Test
+    void token_TogglesUpToFeatureSizeTokens() {
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            table.placeCard(slot, slot);
+
+        assertTrue(table.token(0, 0));
+        assertTrue(table.token(0, 3));
+        assertTrue(table.token(0, 2));
+        assertFalse(table.token(0, 1)); // featureSize tokens already placed
+        assertArrayEquals(new int[]{0, 2, 3}, table.getPlayerTokens(0));
+
+        assertTrue(table.token(0, 2));
+        assertEquals(2, table.tokenAmount(0));
+        assertArrayEquals(new int[]{0, 3}, table.getPlayerTokens(0));
+        assertArrayEquals(new int[0], table.getPlayerTokens(1));
+
+        table.removeCard(3);
+        assertArrayEquals(new int[]{0}, table.getPlayerTokens(0));
+    }
+
+    @Test
+    void placeCardsFromDeck_DealsAllSlotsAndStopsWhenTheDeckRunsOut() {
+        assertEquals(4, table.placeCardsFromDeck(new int[]{3, 1, 0, 2}));
+        assertEquals(4, table.countCards());
+        assertEquals(77, table.deckSize());
+
+        table.removeCards(new int[]{0, 2});
+        assertEquals(2, table.countCards());
+        assertEquals(77, table.deckSize()); // the removed cards left the game
+
+        while (table.deckSize() > 1) {
+            table.placeCardsFromDeck(new int[]{0});
+            table.removeCards(new int[]{0});
+        }
+        assertEquals(1, table.placeCardsFromDeck(new int[]{2, 0}));
+        assertTrue(table.hasCard(2));
+        assertFalse(table.hasCard(0));
+        assertTrue(table.deckEmpty());
+    }
+
+    @Test
+    void cardsListener_CalledOncePerChange() {
+        int[] changes = {0};
+        table.addCardsListener(() -> ++changes[0]);
+
+        table.placeCardsFromDeck(new int[]{0, 1, 2, 3});
+        assertEquals(1, changes[0]);
+        assertTrue(table.token(0, 1));
+        assertTrue(table.hasToken(0, 1));
+        assertEquals(1, changes[0]); // tokens are not card changes
+
+        table.removeCard(1);
+        assertFalse(table.hasToken(0, 1));
+        table.returnAllCardsToDeck();
+        assertEquals(3, changes[0]);
+    }
+
+    @Test
+    void returnAllCardsToDeck_ClearsTheTableTokensAndSets() {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(2, 3);
+        table.token(0, 0);
+        table.token(1, 3);
+        assertTrue(table.setOnTable());
+
+        table.returnAllCardsToDeck();
+        assertEquals(0, table.countCards());
+        assertEquals(81, table.deckSize());
+        assertFalse(table.setOnTable());
+        assertEquals(0, table.tokenAmount(0));
+        assertEquals(0, table.tokenAmount(1));
+        assertEquals(1080, table.availableSets());
+    }
+
+    @Test
+    void availableSets_LargeLayoutsAreSearchedInsteadOfIndexed() {
+        // 4 features of size 5 (625 cards) and 10 of size 3 (59049 cards) have billions of combinations to index
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (String[] features : new String[][]{{"4", "5"}, {"10", "3"}}) {
+                MockLogger logger = new MockLogger();
+                Config config = TestConfigs.config(logger, "FeatureCount", features[0], "FeatureSize", features[1]);
+                Table large = new Table(new Env(logger, config, new MockUserInterface(), new UtilPairCompletion(config)));
+
+                assertEquals(1, large.availableSets());
+                large.placeCardsFromDeck(new int[]{0, 1, 2});
+                assertEquals(1, large.availableSets());
+            }
+        });
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}